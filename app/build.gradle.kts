@@ -36,6 +36,16 @@ android {
         sourceCompatibility = JavaVersion.VERSION_1_8
         targetCompatibility = JavaVersion.VERSION_1_8
     }
+    testOptions {
+        // Robolectric necesita los recursos y el manifiesto para las pruebas de Room en la JVM
+        unitTests.isIncludeAndroidResources = true
+        // El benchmark de MessageDao solo se ejecuta con -Pbenchmark=true
+        unitTests.all {
+            it.systemProperty("benchmark", project.findProperty("benchmark") ?: "false")
+            it.systemProperty("benchmark.sizes", project.findProperty("benchmark.sizes") ?: "10000,100000")
+            it.maxHeapSize = "2g"
+        }
+    }
 }
 
 dependencies {
@@ -48,6 +58,9 @@ dependencies {
 
     // Dependencias para las pruebas
     testImplementation(libs.junit)
+    // Room sobre SQLite en la JVM (pruebas de migraciones y consultas sin dispositivo)
+    testImplementation("org.robolectric:robolectric:4.11.1")
+    testImplementation("androidx.test:core:1.5.0")
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 
@@ -76,6 +89,8 @@ dependencies {
     implementation("androidx.cardview:cardview:1.0.0")
 
     implementation ("androidx.room:room-runtime:2.6.1")
+    // LiveData para las consultas observables de Room
+    implementation ("androidx.lifecycle:lifecycle-livedata:2.6.2")
     annotationProcessor ("androidx.room:room-compiler:2.6.1")
     implementation ("androidx.work:work-runtime:2.8.1")
 }
\ No newline at end of file
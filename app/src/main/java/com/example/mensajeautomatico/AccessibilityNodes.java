@@ -0,0 +1,83 @@
+package com.example.mensajeautomatico;
+
+import android.accessibilityservice.AccessibilityService;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Acceso a los AccessibilityNodeInfo para NodeTraversal, que cuenta los nodos obtenidos
+ * (raíces e hijos) y los reciclados. Con todos los nodos devueltos a su sitio, la
+ * diferencia entre ambos se mantiene acotada a lo largo de miles de envíos; si crece,
+ * hay una fuga.
+ * Se usa desde el hilo principal del servicio de accesibilidad.
+ */
+public final class AccessibilityNodes implements NodeTraversal.Tree<AccessibilityNodeInfo> {
+
+    private static final AccessibilityNodes INSTANCE = new AccessibilityNodes();
+
+    private long obtained;
+    private long recycled;
+
+    public static AccessibilityNodes get() {
+        return INSTANCE;
+    }
+
+    private AccessibilityNodes() {
+    }
+
+    /**
+     * Raíz de la ventana activa, o null. El llamante la recicla con recycle.
+     */
+    public AccessibilityNodeInfo root(AccessibilityService service) {
+        AccessibilityNodeInfo root = service.getRootInActiveWindow();
+        if (root != null) {
+            obtained++;
+        }
+        return root;
+    }
+
+    @Override
+    public int childCount(AccessibilityNodeInfo node) {
+        return node.getChildCount();
+    }
+
+    @Override
+    public AccessibilityNodeInfo child(AccessibilityNodeInfo node, int index) {
+        AccessibilityNodeInfo child = node.getChild(index);
+        if (child != null) {
+            obtained++;
+        }
+        return child;
+    }
+
+    @Override
+    public void recycle(AccessibilityNodeInfo node) {
+        if (node != null) {
+            recycled++;
+            node.recycle();
+        }
+    }
+
+    /**
+     * Recicla la raíz y los nodos encontrados en ella, cada objeto una sola vez (un nodo
+     * puede ser la propia raíz o aparecer para varios objetivos).
+     */
+    public void release(AccessibilityNodeInfo root, AccessibilityNodeInfo... found) {
+        NodeTraversal.release(this, root, Arrays.asList(found));
+    }
+
+    public long getObtainedCount() {
+        return obtained;
+    }
+
+    public long getRecycledCount() {
+        return recycled;
+    }
+
+    public String describe() {
+        return String.format(Locale.getDefault(), "Nodos: %d obtenidos, %d reciclados, %d vivos",
+                obtained, recycled, obtained - recycled);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.mensajeautomatico;
+
+/**
+ * Tiempo máximo de espera de una etapa del envío calculado a partir de lo que ha tardado
+ * últimamente: p95 de las últimas muestras más un margen, dentro de [min, max].
+ * Hasta tener MIN_SAMPLES muestras se usa el valor por defecto. Las etapas que agotan
+ * su tiempo también cuentan (recordTimeout), para que no se quede en el mínimo.
+ */
+public class AdaptiveTimeout {
+
+    static final int WINDOW = 50;
+    static final int MIN_SAMPLES = 10;
+    // Margen sobre el p95: la mitad del p95, y como mínimo MIN_MARGIN_MS
+    static final long MIN_MARGIN_MS = 500;
+
+    private final long defaultMs;
+    private final long minMs;
+    private final long maxMs;
+    private final long[] samples = new long[WINDOW];
+    private int size;
+    private int next;
+
+    public AdaptiveTimeout(long defaultMs, long minMs, long maxMs) {
+        this.defaultMs = defaultMs;
+        this.minMs = minMs;
+        this.maxMs = maxMs;
+    }
+
+    /**
+     * Anota lo que ha tardado la etapa en un envío que la ha completado.
+     */
+    public void record(long elapsedMs) {
+        samples[next] = Math.max(0, elapsedMs);
+        next = (next + 1) % WINDOW;
+        size = Math.min(WINDOW, size + 1);
+    }
+
+    /**
+     * Anota que la etapa agotó su tiempo máximo: cuenta como una muestra de al menos el
+     * doble de ese tiempo, así que tras varias seguidas el p95 sube y el tiempo máximo
+     * vuelve a crecer (hasta max) cuando WhatsApp se vuelve lento, por ejemplo en un
+     * arranque en frío.
+     */
+    public void recordTimeout() {
+        record(Math.min(maxMs, 2 * timeoutMs()));
+    }
+
+    public long timeoutMs() {
+        if (size < MIN_SAMPLES) {
+            return defaultMs;
+        }
+        long[] recent = new long[size];
+        System.arraycopy(samples, 0, recent, 0, size);
+        long p95 = Percentiles.of(recent).p95;
+        long timeout = p95 + Math.max(MIN_MARGIN_MS, p95 / 2);
+        return Math.max(minMs, Math.min(maxMs, timeout));
+    }
+}
@@ -1,27 +1,232 @@
 package com.example.mensajeautomatico;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 import android.content.Context;
 
-@Database(entities = {MessageEntity.class}, version = 1, exportSchema = false)
+@Database(entities = {MessageEntity.class, MessageTemplateEntity.class, MessageArchiveEntity.class,
+        MessageStatusCountEntity.class, HourlySendStatsEntity.class, SendTraceEntity.class},
+        version = 12, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
     public abstract MessageDao messageDao();
+    public abstract MessageTemplateDao messageTemplateDao();
+    public abstract MessageArchiveDao messageArchiveDao();
+    public abstract MessageStatsDao messageStatsDao();
+    public abstract SendTraceDao sendTraceDao();
+
+    public static final String DATABASE_NAME = "message_database";
 
     private static volatile AppDatabase INSTANCE;
 
+    /**
+     * v1 -> v2: el estado pasa de texto libre ("Programado", "Enviado", "Error") a un
+     * código entero (ver MessageStatus) y se añaden los índices (status, scheduledTime)
+     * y (createdAt). SQLite no permite cambiar el tipo de una columna, así que se
+     * reconstruye la tabla copiando las filas.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `messages_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`phoneNumber` TEXT, "
+                    + "`messageText` TEXT, "
+                    + "`scheduledTime` INTEGER NOT NULL, "
+                    + "`status` INTEGER NOT NULL, "
+                    + "`createdAt` INTEGER NOT NULL)");
+            db.execSQL("INSERT INTO `messages_new` (id, phoneNumber, messageText, scheduledTime, status, createdAt) "
+                    + "SELECT id, phoneNumber, messageText, scheduledTime, "
+                    + "CASE status "
+                    + "WHEN 'Enviado' THEN " + MessageStatus.SENT + " "
+                    + "WHEN 'Error' THEN " + MessageStatus.ERROR + " "
+                    + "ELSE " + MessageStatus.SCHEDULED + " END, "
+                    + "createdAt FROM `messages`");
+            db.execSQL("DROP TABLE `messages`");
+            db.execSQL("ALTER TABLE `messages_new` RENAME TO `messages`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_messages_status_scheduledTime` "
+                    + "ON `messages` (`status`, `scheduledTime`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_messages_createdAt` ON `messages` (`createdAt`)");
+        }
+    };
+
+    /**
+     * v2 -> v3: tabla de plantillas para no repetir el mismo texto en miles de filas.
+     * Los mensajes existentes conservan su texto; las columnas nuevas quedan a nulo.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `message_templates` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`text` TEXT NOT NULL, "
+                    + "`hash` INTEGER NOT NULL, "
+                    + "`createdAt` INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_message_templates_hash` ON `message_templates` (`hash`)");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `templateId` INTEGER");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `templateVars` TEXT");
+        }
+    };
+
+    /**
+     * v3 -> v4: tabla de archivo para el historial antiguo (ver MaintenanceWorker).
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `message_archive` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`archivedAt` INTEGER NOT NULL, "
+                    + "`firstCreatedAt` INTEGER NOT NULL, "
+                    + "`lastCreatedAt` INTEGER NOT NULL, "
+                    + "`rowCount` INTEGER NOT NULL, "
+                    + "`payload` BLOB NOT NULL)");
+        }
+    };
+
+    /**
+     * v4 -> v5: búsqueda de texto completo (ver MessageSearch) e índice por templateId.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_messages_templateId` ON `messages` (`templateId`)");
+            MessageSearch.createSearchTables(db);
+            MessageSearch.rebuildSearchTables(db);
+        }
+    };
+
+    /**
+     * v5 -> v6: contadores por estado e histograma por hora mantenidos por triggers
+     * (ver MessageStats). Los contadores se calculan una vez con las filas actuales.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `message_status_counts` ("
+                    + "`status` INTEGER NOT NULL, "
+                    + "`total` INTEGER NOT NULL, PRIMARY KEY(`status`))");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `message_hourly_stats` ("
+                    + "`hourBucket` INTEGER NOT NULL, "
+                    + "`sent` INTEGER NOT NULL, "
+                    + "`failed` INTEGER NOT NULL, PRIMARY KEY(`hourBucket`))");
+            MessageStats.seedCounts(db);
+            MessageStats.createTriggers(db);
+        }
+    };
+
+    /**
+     * v6 -> v7: momento real de entrega y modo de programación de cada mensaje, para
+     * medir el retraso respecto a scheduledTime.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `dispatchedAt` INTEGER");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `dispatchMode` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_messages_dispatchMode_dispatchedAt` "
+                    + "ON `messages` (`dispatchMode`, `dispatchedAt`)");
+        }
+    };
+
+    /**
+     * v7 -> v8: índice para consultar la última entrega a cada destinatario (separación
+     * mínima entre mensajes al mismo número, ver SendRateLimiter).
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_messages_phoneNumber_dispatchedAt` "
+                    + "ON `messages` (`phoneNumber`, `dispatchedAt`)");
+        }
+    };
+
+    /**
+     * v8 -> v9: carril de prioridad. Los mensajes existentes quedan en el carril normal.
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `priority` INTEGER NOT NULL DEFAULT 1");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_messages_status_priority_scheduledTime` "
+                    + "ON `messages` (`status`, `priority`, `scheduledTime`)");
+        }
+    };
+
+    /**
+     * v9 -> v10: regla de repetición de los mensajes periódicos.
+     */
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `recurrenceRule` TEXT");
+        }
+    };
+
+    /**
+     * v10 -> v11: reintentos por mensaje (ver RetryPolicy).
+     */
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `attemptCount` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `lastError` TEXT");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `nextAttemptAt` INTEGER");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_messages_status_nextAttemptAt` "
+                    + "ON `messages` (`status`, `nextAttemptAt`)");
+        }
+    };
+
+    /**
+     * v11 -> v12: trazas de tiempos por etapa del envío (ver SendTracer).
+     */
+    static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `send_traces` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`messageId` INTEGER NOT NULL, `stage` INTEGER NOT NULL, `elapsedMs` INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_send_traces_messageId` ON `send_traces` (`messageId`)");
+            SendTracer.createTriggers(db);
+        }
+    };
+
+    // Tablas y triggers que Room no conoce; en una instalación nueva se crean aquí
+    private static final Callback CREATE_CALLBACK = new Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            MessageSearch.createSearchTables(db);
+            MessageStats.createTriggers(db);
+            SendTracer.createTriggers(db);
+        }
+    };
+
     public static AppDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
-                    INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
-                                    AppDatabase.class, "message_database")
-                            .fallbackToDestructiveMigration()
-                            .build();
+                    INSTANCE = builder(context, DATABASE_NAME, DatabaseProfile.TUNED).build();
                 }
             }
         }
         return INSTANCE;
     }
-}
\ No newline at end of file
+
+    /**
+     * Builder con todas las migraciones y el perfil de SQLite indicado. Lo usan también
+     * las pruebas y el benchmark para abrir bases de datos propias.
+     */
+    static RoomDatabase.Builder<AppDatabase> builder(Context context, String name, DatabaseProfile profile) {
+        RoomDatabase.Builder<AppDatabase> builder = Room.databaseBuilder(context.getApplicationContext(),
+                        AppDatabase.class, name)
+                .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7,
+                        MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10,
+                        MIGRATION_10_11, MIGRATION_11_12)
+                .addCallback(CREATE_CALLBACK);
+        profile.apply(builder);
+        return builder;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecutores compartidos de la aplicación, creados por MyApplication:
+ * - diskIO: consultas y trabajos de base de datos o ficheros (lecturas de pantallas,
+ *   receptores, importaciones, conversión de filas para la UI).
+ * - serialWrites: un único hilo para las escrituras pequeñas y frecuentes (estados,
+ *   trazas, mensajes programados a mano), en orden de llegada.
+ * No hay un ejecutor aparte para cálculo: la conversión de filas lee plantillas de la
+ * base de datos, así que es E/S, y el diff de las listas lo hace ListAdapter en su
+ * propio hilo de fondo.
+ * Todas las colas están acotadas: si se llenan, execute() lanza
+ * RejectedExecutionException en lugar de acumular hilos o tareas sin límite. Cada
+ * llamador la captura; las tareas que no se pueden perder usan executeOrSpawn.
+ */
+public final class AppExecutors {
+
+    private static final int DISK_IO_THREADS = 3;
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int SERIAL_QUEUE_CAPACITY = 1024;
+    // Los hilos sin trabajo se cierran tras esta espera
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    // Para procesos sin MyApplication (pruebas con Robolectric)
+    private static volatile AppExecutors fallback;
+
+    private final ThreadPoolExecutor diskIO;
+    private final ThreadPoolExecutor serialWrites;
+
+    AppExecutors() {
+        diskIO = newPool("app-disk-io", DISK_IO_THREADS, QUEUE_CAPACITY);
+        serialWrites = newPool("app-serial-write", 1, SERIAL_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Ejecutores de la aplicación a la que pertenece context.
+     */
+    public static AppExecutors from(Context context) {
+        Context app = context.getApplicationContext();
+        if (app instanceof MyApplication) {
+            return ((MyApplication) app).getExecutors();
+        }
+        if (fallback == null) {
+            synchronized (AppExecutors.class) {
+                if (fallback == null) {
+                    fallback = new AppExecutors();
+                }
+            }
+        }
+        return fallback;
+    }
+
+    public ThreadPoolExecutor diskIO() {
+        return diskIO;
+    }
+
+    public ThreadPoolExecutor serialWrites() {
+        return serialWrites;
+    }
+
+    /**
+     * Ejecuta task en executor o, si su cola está llena, en un hilo propio. Para tareas que
+     * no se pueden perder ni hacer en el hilo principal, como las de los receptores con
+     * goAsync(), que tienen que llegar siempre a pendingResult.finish().
+     */
+    public static void executeOrSpawn(Executor executor, String name, Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Tareas en ejecución y en cola de cada ejecutor, para monitorización.
+     */
+    public String describe() {
+        return String.format(Locale.getDefault(), "E/S %s · escritura %s",
+                describe(diskIO), describe(serialWrites));
+    }
+
+    private static String describe(ThreadPoolExecutor executor) {
+        return executor.getActiveCount() + " activas/" + executor.getQueue().size() + " en cola";
+    }
+
+    private static ThreadPoolExecutor newPool(String name, int threads, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueCapacity), new NamedThreadFactory(name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Recuperación tras reiniciar el dispositivo: devuelve a la cola los envíos que se
+ * quedaron a medias, vuelve a programar el despachador (su nombre de trabajo único
+ * evita duplicados aunque WorkManager ya lo tuviera) y, si hay mensajes cuya hora pasó
+ * con el teléfono apagado, activa el modo de recuperación para enviarlos poco a poco.
+ * Debe llamarse fuera del hilo principal.
+ */
+public final class BootRecovery {
+
+    private static final String TAG = "BootRecovery";
+
+    private BootRecovery() {
+    }
+
+    public static PendingSummary recover(Context context) {
+        long start = SystemClock.elapsedRealtime();
+        long now = System.currentTimeMillis();
+        MessageDao dao = AppDatabase.getDatabase(context).messageDao();
+
+        int released = dao.releaseInterruptedSends();
+        PendingSummary summary = dao.getPendingSummary(now);
+
+        if (summary.overdue > 0) {
+            // Los vencidos se envían en lotes pequeños y espaciados en lugar de todos a la vez
+            MessageDispatcher.startCatchUp(context, now);
+        }
+        // Tiene en cuenta también los reintentos pendientes
+        MessageDispatcher.rearm(context);
+
+        Log.d(TAG, "Recuperación tras reinicio en " + (SystemClock.elapsedRealtime() - start) + " ms: "
+                + summary.pending + " mensajes pendientes, " + summary.overdue + " vencidos, "
+                + released + " envíos interrumpidos devueltos a la cola.");
+        return summary;
+    }
+}
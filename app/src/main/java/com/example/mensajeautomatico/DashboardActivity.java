@@ -2,33 +2,85 @@ package com.example.mensajeautomatico;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.TextView;
-import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.LiveData;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Actividad que maneja el panel de control del usuario.
  * Muestra el historial de mensajes y opciones para programar.
+ * Solo la primera página del historial se observa con LiveData: Room vuelve a emitirla
+ * cuando la tabla cambia (por ejemplo, cuando el servicio marca un mensaje como
+ * enviado), y el adaptador repinta únicamente las filas que han cambiado. Las filas
+ * más antiguas se cargan al desplazarse, por páginas de clave (MessageHistoryPager), y
+ * no se vuelven a leer con cada cambio: la memoria y el trabajo por invalidación no
+ * crecen con lo que se haya desplazado el usuario.
  */
 public class DashboardActivity extends AppCompatActivity {
 
+    private static final String TAG = "DashboardActivity";
+
     private Button btnProgramarMensaje;
     private RecyclerView recyclerViewHistorial;
     private TextView tvEmptyHistory;
+    private EditText etSearch;
+    private TextView tvSummary;
+    private HourlyHistogramView histogramView;
     private MessageAdapter messageAdapter;
-    private List<Message> messageList = new ArrayList<>();
     private AppDatabase db;
 
+    // Historial: la primera página en vivo y, detrás, las páginas anteriores ya cargadas
+    private static final int PAGE_SIZE = MessageHistoryPager.DEFAULT_PAGE_SIZE;
+    private List<MessageEntity> lastLiveMessages = new ArrayList<>();
+    private final List<MessageEntity> olderMessages = new ArrayList<>();
+    private MessageHistoryPager olderPager;
+    private boolean isLoadingOlder;
+
+    // Búsqueda: resultados paginados por clave
+    private String searchQuery = "";   // Texto escrito
+    private String activeQuery = "";   // Texto de la búsqueda mostrada
+    private MessageHistoryPager searchPager;
+    private final List<Message> searchResults = new ArrayList<>();
+    private boolean isLoading;
+    private int loadGeneration; // Descarta páginas pedidas antes de la última búsqueda
+
+    // Conversión Entity -> Message en el ejecutor de E/S compartido; como puede terminar
+    // fuera de orden, solo se muestra la última emisión pedida
+    private int submitSequence;
+    private AppExecutors executors;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = this::startSearch;
+
+    // Cuántas filas antes del final se pide la siguiente página
+    private static final int PREFETCH_DISTANCE = 10;
+    // Espera tras la última tecla antes de lanzar la búsqueda
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+    // Horas que abarca el histograma (una semana)
+    private static final int HISTOGRAM_HOURS = 7 * 24;
+
+    // Programados pendientes de cualquier día (la tabla de contadores no separa por fecha)
+    private long scheduledCount;
+    private long sentToday;
+    private long failedToday;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -37,17 +89,51 @@ public class DashboardActivity extends AppCompatActivity {
         btnProgramarMensaje = findViewById(R.id.btn_programar_mensaje);
         recyclerViewHistorial = findViewById(R.id.recycler_view_historial);
         tvEmptyHistory = findViewById(R.id.tv_empty_history);
+        etSearch = findViewById(R.id.et_search);
+        tvSummary = findViewById(R.id.tv_summary);
+        histogramView = findViewById(R.id.histogram_hourly);
 
         // Inicializar la base de datos
         db = AppDatabase.getDatabase(this);
+        executors = AppExecutors.from(this);
 
         // Configura RecyclerView
-        recyclerViewHistorial.setLayoutManager(new LinearLayoutManager(this));
-        messageAdapter = new MessageAdapter(this, messageList);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerViewHistorial.setLayoutManager(layoutManager);
+        messageAdapter = new MessageAdapter(this);
         recyclerViewHistorial.setAdapter(messageAdapter);
 
-        // Cargar historial automáticamente
-        loadMessageHistory();
+        // Pedir la siguiente página cuando el usuario se acerca al final de la lista
+        recyclerViewHistorial.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition()
+                        >= messageAdapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        // Buscar mientras el usuario escribe
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchQuery = s.toString().trim();
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+            }
+        });
+
+        observeFirstPage();
+        observeSummary();
 
         btnProgramarMensaje.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -58,36 +144,260 @@ public class DashboardActivity extends AppCompatActivity {
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        // Recargar historial cuando la actividad se reanuda
-        loadMessageHistory();
+    protected void onDestroy() {
+        searchHandler.removeCallbacks(searchRunnable);
+        super.onDestroy();
+    }
+
+    /**
+     * Observa la primera página. Room solo vuelve a consultar cuando la tabla se invalida,
+     * sin recargas en onResume.
+     */
+    private void observeFirstPage() {
+        LiveData<List<MessageEntity>> liveMessages = db.messageDao().observeLatestMessages(PAGE_SIZE);
+        liveMessages.observe(this, entities -> {
+            keepPushedOutRows(lastLiveMessages, entities);
+            lastLiveMessages = entities;
+            if (!isSearching()) {
+                submitEntities(history());
+            }
+        });
     }
 
     /**
-     * Carga el historial de mensajes
+     * Las filas nuevas empujan las últimas de la primera página fuera de ella: si ya hay
+     * páginas anteriores cargadas, pasan a su principio para que no quede un hueco entre
+     * ambas.
      */
-    private void loadMessageHistory() {
-        new Thread(() -> {
-            List<MessageEntity> messages = db.messageDao().getAllMessages();
-            runOnUiThread(() -> {
-                messageList.clear();
-                for (MessageEntity entity : messages) {
-                    // Convertir Entity a Modelo
-                    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
-                    String timestamp = sdf.format(new Date(entity.scheduledTime));
-                    messageList.add(new Message(entity.phoneNumber, entity.messageText, timestamp, entity.status));
+    private void keepPushedOutRows(List<MessageEntity> previous, List<MessageEntity> current) {
+        if (olderPager == null || previous.isEmpty() || current.size() < PAGE_SIZE) {
+            return;
+        }
+        MessageEntity boundary = current.get(current.size() - 1);
+        List<MessageEntity> pushedOut = new ArrayList<>();
+        for (MessageEntity entity : previous) {
+            if (isOlder(entity, boundary) && !containsId(current, entity.id) && !containsId(olderMessages, entity.id)) {
+                pushedOut.add(entity);
+            }
+        }
+        olderMessages.addAll(0, pushedOut);
+    }
+
+    /**
+     * Primera página seguida de las anteriores, sin repetir filas (una fila que vuelve a
+     * la primera página, por ejemplo al archivarse otras, se muestra desde ella).
+     */
+    private List<MessageEntity> history() {
+        List<MessageEntity> rows = new ArrayList<>(lastLiveMessages.size() + olderMessages.size());
+        rows.addAll(lastLiveMessages);
+        for (MessageEntity entity : olderMessages) {
+            if (!containsId(lastLiveMessages, entity.id)) {
+                rows.add(entity);
+            }
+        }
+        return rows;
+    }
+
+    private static boolean isOlder(MessageEntity entity, MessageEntity than) {
+        return entity.createdAt < than.createdAt || (entity.createdAt == than.createdAt && entity.id < than.id);
+    }
+
+    private static boolean containsId(List<MessageEntity> entities, int id) {
+        for (MessageEntity entity : entities) {
+            if (entity.id == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resumen de cabecera. Lee las tablas de contadores que mantienen los triggers
+     * (ver MessageStats): una fila por estado y una por hora, nunca la tabla de mensajes.
+     */
+    private void observeSummary() {
+        MessageStatsDao statsDao = db.messageStatsDao();
+        statsDao.observeStatusCounts().observe(this, counts -> {
+            scheduledCount = 0;
+            for (MessageStatusCountEntity count : counts) {
+                if (count.status == MessageStatus.SCHEDULED) {
+                    scheduledCount = count.total;
+                }
+            }
+            renderSummary();
+        });
+
+        long nowBucket = MessageStats.hourBucket(System.currentTimeMillis());
+        long firstBucket = nowBucket - HISTOGRAM_HOURS + 1;
+        statsDao.observeHourlyStats(firstBucket).observe(this, hours -> {
+            Calendar startOfDay = Calendar.getInstance();
+            startOfDay.set(Calendar.HOUR_OF_DAY, 0);
+            startOfDay.set(Calendar.MINUTE, 0);
+            startOfDay.set(Calendar.SECOND, 0);
+            startOfDay.set(Calendar.MILLISECOND, 0);
+            long todayBucket = MessageStats.hourBucket(startOfDay.getTimeInMillis());
+
+            long[] sent = new long[HISTOGRAM_HOURS];
+            long[] failed = new long[HISTOGRAM_HOURS];
+            sentToday = 0;
+            failedToday = 0;
+            for (HourlySendStatsEntity hour : hours) {
+                int index = (int) (hour.hourBucket - firstBucket);
+                if (index >= 0 && index < HISTOGRAM_HOURS) {
+                    sent[index] = hour.sent;
+                    failed[index] = hour.failed;
                 }
-                messageAdapter.notifyDataSetChanged();
-
-                if (messageList.isEmpty()) {
-                    tvEmptyHistory.setVisibility(View.VISIBLE);
-                    recyclerViewHistorial.setVisibility(View.GONE);
-                } else {
-                    tvEmptyHistory.setVisibility(View.GONE);
-                    recyclerViewHistorial.setVisibility(View.VISIBLE);
+                if (hour.hourBucket >= todayBucket) {
+                    sentToday += hour.sent;
+                    failedToday += hour.failed;
                 }
+            }
+            histogramView.setData(sent, failed);
+            renderSummary();
+        });
+    }
+
+    private void renderSummary() {
+        tvSummary.setText(String.format(Locale.getDefault(),
+                "Pendientes: %d   Enviados hoy: %d   Errores hoy: %d",
+                scheduledCount, sentToday, failedToday));
+    }
+
+    private boolean isSearching() {
+        return !activeQuery.isEmpty();
+    }
+
+    /**
+     * Carga la siguiente página del historial o de la búsqueda
+     */
+    private void loadNextPage() {
+        if (!isSearching()) {
+            loadOlderPage();
+            return;
+        }
+
+        if (isLoading || searchPager.isEndReached()) {
+            return;
+        }
+        isLoading = true;
+        final int generation = loadGeneration;
+        final MessageHistoryPager currentPager = searchPager;
+        try {
+            executors.diskIO().execute(() -> {
+                List<Message> page = toMessages(currentPager.loadNextPage());
+                runOnUiThread(() -> {
+                    if (generation != loadGeneration) {
+                        return;
+                    }
+                    searchResults.addAll(page);
+                    isLoading = false;
+                    showMessages(new ArrayList<>(searchResults));
+                });
             });
-        }).start();
+        } catch (RejectedExecutionException e) {
+            // Ejecutor saturado: el siguiente desplazamiento lo vuelve a pedir
+            Log.w(TAG, "Ejecutor de E/S saturado; no se carga la página de la búsqueda.");
+            isLoading = false;
+        }
+    }
+
+    /**
+     * Carga la página anterior a las ya mostradas del historial. Las páginas se guardan
+     * aunque entre tanto empiece una búsqueda: el paginador ya ha avanzado.
+     */
+    private void loadOlderPage() {
+        // Con la primera página sin llenar no hay filas anteriores
+        if (isLoadingOlder || lastLiveMessages.size() < PAGE_SIZE
+                || (olderPager != null && olderPager.isEndReached())) {
+            return;
+        }
+        if (olderPager == null) {
+            MessageEntity last = lastLiveMessages.get(lastLiveMessages.size() - 1);
+            olderPager = new MessageHistoryPager(db.messageDao(), PAGE_SIZE);
+            olderPager.startAfter(last.createdAt, last.id);
+        }
+        isLoadingOlder = true;
+        final MessageHistoryPager pager = olderPager;
+        try {
+            executors.diskIO().execute(() -> {
+                List<MessageEntity> page = pager.loadNextPage();
+                runOnUiThread(() -> {
+                    isLoadingOlder = false;
+                    olderMessages.addAll(page);
+                    if (!isSearching()) {
+                        submitEntities(history());
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Ejecutor de E/S saturado; no se carga la página anterior del historial.");
+            isLoadingOlder = false;
+        }
+    }
+
+    /**
+     * Empieza una búsqueda nueva, o vuelve al historial en vivo si el texto está vacío
+     */
+    private void startSearch() {
+        loadGeneration++;
+        isLoading = false;
+        searchResults.clear();
+        activeQuery = searchQuery;
+        if (!isSearching()) {
+            searchPager = null;
+            submitEntities(history());
+            return;
+        }
+        // Un paginador nuevo por búsqueda: las páginas pedidas por el anterior se descartan
+        searchPager = new MessageHistoryPager(db.messageDao(), activeQuery, MessageHistoryPager.DEFAULT_PAGE_SIZE);
+        loadNextPage();
+    }
+
+    private void submitEntities(List<MessageEntity> entities) {
+        final int generation = loadGeneration;
+        final int sequence = ++submitSequence;
+        // toMessages puede leer plantillas de la base de datos: ejecutor de E/S
+        try {
+            executors.diskIO().execute(() -> {
+                List<Message> converted = toMessages(entities);
+                runOnUiThread(() -> {
+                    if (sequence == submitSequence && generation == loadGeneration && !isSearching()) {
+                        showMessages(converted);
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            // La siguiente emisión del historial vuelve a pintarlo
+            Log.w(TAG, "Ejecutor de E/S saturado; se omite una actualización de la lista.");
+        }
+    }
+
+    /**
+     * Convierte Entity a Modelo. Puede leer plantillas de la base de datos, así que se
+     * llama siempre desde un ejecutor compartido, a veces desde varios hilos a la vez:
+     * SimpleDateFormat no es seguro entre hilos, así que cada llamada crea el suyo.
+     */
+    private List<Message> toMessages(List<MessageEntity> entities) {
+        MessageTemplates templates = MessageTemplates.getInstance(this);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+        List<Message> converted = new ArrayList<>(entities.size());
+        for (MessageEntity entity : entities) {
+            String timestamp = dateFormat.format(new Date(entity.scheduledTime));
+            converted.add(new Message(entity.id, entity.phoneNumber, templates.resolveText(entity), timestamp,
+                    MessageStatus.toLabel(entity.status)));
+        }
+        return converted;
+    }
+
+    private void showMessages(List<Message> messages) {
+        messageAdapter.submitList(messages);
+
+        if (messages.isEmpty()) {
+            tvEmptyHistory.setVisibility(View.VISIBLE);
+            recyclerViewHistorial.setVisibility(View.GONE);
+        } else {
+            tvEmptyHistory.setVisibility(View.GONE);
+            recyclerViewHistorial.setVisibility(View.VISIBLE);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package com.example.mensajeautomatico;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Configuración de SQLite con la que se abre AppDatabase.
+ * DEFAULT deja los valores por defecto de Room; TUNED fija WAL de forma explícita y
+ * ajusta la sincronización y las cachés de SQLite para el patrón de uso de la app
+ * (muchas escrituras pequeñas de estado y lecturas paginadas por índice).
+ */
+public enum DatabaseProfile {
+    DEFAULT,
+    TUNED;
+
+    // Caché de páginas por conexión, en KiB (valor negativo para SQLite)
+    static final int PAGE_CACHE_KIB = 4096;
+
+    void apply(RoomDatabase.Builder<AppDatabase> builder) {
+        if (this == DEFAULT) {
+            return;
+        }
+        builder.setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING);
+        builder.addCallback(new RoomDatabase.Callback() {
+            @Override
+            public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                // Con WAL, NORMAL sigue siendo seguro ante cierres de la app y evita un fsync por transacción
+                db.query("PRAGMA synchronous = NORMAL").close();
+                db.query("PRAGMA cache_size = -" + PAGE_CACHE_KIB).close();
+                db.query("PRAGMA temp_store = MEMORY").close();
+            }
+        });
+    }
+}
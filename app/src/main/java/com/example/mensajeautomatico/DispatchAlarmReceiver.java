@@ -0,0 +1,34 @@
+package com.example.mensajeautomatico;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * Recibe la alarma exacta del modo exacto (ver MessageDispatcher) y envía los mensajes
+ * vencidos con el mismo camino que MessageDispatchWorker.
+ */
+public class DispatchAlarmReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "DispatchAlarmReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        // El envío consulta la base de datos: se hace fuera del hilo principal
+        final PendingResult pendingResult = goAsync();
+        // Con la cola llena, en un hilo propio: rechazarlo perdería la alarma y el finish()
+        AppExecutors.executeOrSpawn(AppExecutors.from(context).diskIO(), "dispatch-alarm", () -> {
+            Context appContext = context.getApplicationContext();
+            try {
+                MessageDispatchWorker.dispatchDue(appContext, MessageDispatcher.MODE_EXACT_ALARM);
+            } catch (Exception e) {
+                Log.e(TAG, "Error al despachar mensajes: " + e.getMessage());
+                // Sin el reintento de WorkManager: volver a programar para no perder la cola
+                MessageDispatcher.armAt(appContext, System.currentTimeMillis() + MessageDispatchWorker.CATCH_UP_INTERVAL_MS);
+            } finally {
+                pendingResult.finish();
+            }
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * Histograma sencillo de envíos por hora: una barra por hora, enviados en verde y
+ * errores en rojo apilados encima.
+ */
+public class HourlyHistogramView extends View {
+
+    private final Paint sentPaint = new Paint();
+    private final Paint failedPaint = new Paint();
+    private long[] sent = new long[0];
+    private long[] failed = new long[0];
+
+    public HourlyHistogramView(Context context) {
+        this(context, null);
+    }
+
+    public HourlyHistogramView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        sentPaint.setColor(ContextCompat.getColor(context, R.color.green));
+        failedPaint.setColor(ContextCompat.getColor(context, R.color.red));
+    }
+
+    /**
+     * Valores por hora, del más antiguo al más reciente. Ambos arrays deben tener la
+     * misma longitud.
+     */
+    public void setData(long[] sent, long[] failed) {
+        this.sent = sent;
+        this.failed = failed;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        int buckets = sent.length;
+        if (buckets == 0) {
+            return;
+        }
+        long max = 1;
+        for (int i = 0; i < buckets; i++) {
+            max = Math.max(max, sent[i] + failed[i]);
+        }
+
+        float width = getWidth() - getPaddingLeft() - getPaddingRight();
+        float height = getHeight() - getPaddingTop() - getPaddingBottom();
+        float barWidth = width / buckets;
+        float bottom = getPaddingTop() + height;
+        for (int i = 0; i < buckets; i++) {
+            float left = getPaddingLeft() + i * barWidth;
+            float sentHeight = height * sent[i] / max;
+            float failedHeight = height * failed[i] / max;
+            canvas.drawRect(left, bottom - sentHeight, left + barWidth, bottom, sentPaint);
+            canvas.drawRect(left, bottom - sentHeight - failedHeight, left + barWidth, bottom - sentHeight, failedPaint);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.mensajeautomatico;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Envíos y errores por hora. hourBucket son las horas UTC desde epoch
+ * (milisegundos / 3600000). Lo mantienen los triggers de MessageStats.
+ */
+@Entity(tableName = "message_hourly_stats")
+public class HourlySendStatsEntity {
+    @PrimaryKey
+    public long hourBucket;
+    public long sent;
+    public long failed;
+
+    public HourlySendStatsEntity(long hourBucket, long sent, long failed) {
+        this.hourBucket = hourBucket;
+        this.sent = sent;
+        this.failed = failed;
+    }
+}
@@ -28,6 +28,7 @@ public class MainActivity extends AppCompatActivity {
     private Button enableAccessibilityButton;
     private Button goToDashboardButton;
     private Button scheduleMessageButton;
+    private Button settingsButton;
 
     // Declaración de variables para la pantalla de login
     private EditText emailEditText;
@@ -87,6 +88,7 @@ public class MainActivity extends AppCompatActivity {
         enableAccessibilityButton = findViewById(R.id.enable_accessibility_button);
         goToDashboardButton = findViewById(R.id.go_to_dashboard_button);
         scheduleMessageButton = findViewById(R.id.schedule_message_button);
+        settingsButton = findViewById(R.id.settings_button);
 
         enableAccessibilityButton.setOnClickListener(v -> {
             // Abre la configuración de accesibilidad para que el usuario active el servicio.
@@ -107,6 +109,12 @@ public class MainActivity extends AppCompatActivity {
             startActivity(intent);
         });
 
+        settingsButton.setOnClickListener(v -> {
+            // Navega a SettingsActivity (modo exacto y retraso de envío)
+            Intent intent = new Intent(MainActivity.this, SettingsActivity.class);
+            startActivity(intent);
+        });
+
         // El estado de los botones se actualizará en onResume()
     }
 
@@ -0,0 +1,198 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Trabajo periódico de mantenimiento del historial: mueve a message_archive, en
+ * lotes pequeños, los mensajes terminados cuya hora programada es más antigua que la
+ * política de retención
+ * y después ejecuta un vacuum incremental para que el fichero de la base de datos
+ * se reduzca de verdad.
+ */
+public class MaintenanceWorker extends Worker {
+
+    private static final String TAG = "MaintenanceWorker";
+    public static final String WORK_NAME = "mantenimiento_historial";
+    public static final String OUTPUT_ROWS_ARCHIVED = "rows_archived";
+    public static final String OUTPUT_BYTES_RECLAIMED = "bytes_reclaimed";
+
+    // Límite por ejecución para no retener la base de datos demasiado tiempo
+    private static final int MAX_BATCHES_PER_RUN = 200;
+    // Estados terminados que se archivan, cada uno con su recorrido del índice
+    private static final int[] ARCHIVABLE_STATUSES = {MessageStatus.SENT, MessageStatus.ERROR};
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    public MaintenanceWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Programa el mantenimiento una vez al día con el dispositivo inactivo.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresDeviceIdle(true)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(MaintenanceWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        AppDatabase db = AppDatabase.getDatabase(getApplicationContext());
+        RetentionPolicy policy = RetentionPolicy.load(getApplicationContext());
+        long cutoff = policy.cutoff(System.currentTimeMillis());
+
+        try {
+            long sizeBefore = databaseSizeBytes(db);
+            int archived = 0;
+            int batches = 0;
+            for (int status : ARCHIVABLE_STATUSES) {
+                for (; batches < MAX_BATCHES_PER_RUN && !isStopped(); batches++) {
+                    int moved = archiveBatch(db, status, cutoff, policy.batchSize);
+                    archived += moved;
+                    if (moved < policy.batchSize) {
+                        break;
+                    }
+                }
+            }
+
+            // El histograma por hora solo se muestra para la última semana
+            db.messageStatsDao().deleteHourlyStatsBefore(MessageStats.hourBucket(cutoff));
+
+            vacuum(db);
+            long reclaimed = Math.max(0, sizeBefore - databaseSizeBytes(db));
+
+            Log.d(TAG, "Mantenimiento terminado: " + archived + " mensajes archivados, "
+                    + reclaimed + " bytes recuperados.");
+            return Result.success(new Data.Builder()
+                    .putInt(OUTPUT_ROWS_ARCHIVED, archived)
+                    .putLong(OUTPUT_BYTES_RECLAIMED, reclaimed)
+                    .build());
+        } catch (Exception e) {
+            Log.e(TAG, "Error en el mantenimiento del historial: " + e.getMessage());
+            return Result.retry();
+        }
+    }
+
+    /**
+     * Archiva un lote en una transacción: inserta el lote comprimido y borra las filas.
+     */
+    private int archiveBatch(AppDatabase db, int status, long cutoff, int batchSize) throws IOException {
+        List<MessageEntity> messages = db.messageDao().getArchivableMessages(status, cutoff, batchSize);
+        if (messages.isEmpty()) {
+            return 0;
+        }
+
+        MessageTemplates templates = MessageTemplates.getInstance(getApplicationContext());
+        JSONArray rows = new JSONArray();
+        List<Integer> ids = new ArrayList<>(messages.size());
+        long firstCreatedAt = Long.MAX_VALUE;
+        long lastCreatedAt = Long.MIN_VALUE;
+        try {
+            for (MessageEntity message : messages) {
+                firstCreatedAt = Math.min(firstCreatedAt, message.createdAt);
+                lastCreatedAt = Math.max(lastCreatedAt, message.createdAt);
+                JSONObject row = new JSONObject();
+                row.put("id", message.id);
+                row.put("phoneNumber", message.phoneNumber);
+                // El archivo guarda el texto final para no depender de la plantilla
+                row.put("messageText", templates.resolveText(message));
+                row.put("scheduledTime", message.scheduledTime);
+                row.put("status", message.status);
+                row.put("createdAt", message.createdAt);
+                rows.put(row);
+                ids.add(message.id);
+            }
+        } catch (org.json.JSONException e) {
+            throw new IOException(e);
+        }
+
+        MessageArchiveEntity archive = new MessageArchiveEntity(System.currentTimeMillis(),
+                firstCreatedAt, lastCreatedAt, messages.size(), gzip(rows.toString()));
+
+        db.runInTransaction(() -> {
+            db.messageArchiveDao().insert(archive);
+            db.messageDao().deleteByIds(ids);
+        });
+        return messages.size();
+    }
+
+    /**
+     * La primera vez activa auto_vacuum=INCREMENTAL (requiere un VACUUM completo); a partir
+     * de ahí basta con devolver al sistema las páginas libres.
+     */
+    private void vacuum(AppDatabase db) {
+        SupportSQLiteDatabase sqlite = db.getOpenHelper().getWritableDatabase();
+        if (queryLong(sqlite, "PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            Log.d(TAG, "Activando auto_vacuum incremental (VACUUM completo).");
+            sqlite.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            sqlite.execSQL("VACUUM");
+        } else {
+            queryLong(sqlite, "PRAGMA incremental_vacuum");
+        }
+        queryLong(sqlite, "PRAGMA wal_checkpoint(TRUNCATE)");
+    }
+
+    private static long databaseSizeBytes(AppDatabase db) {
+        SupportSQLiteDatabase sqlite = db.getOpenHelper().getWritableDatabase();
+        return queryLong(sqlite, "PRAGMA page_count") * queryLong(sqlite, "PRAGMA page_size");
+    }
+
+    private static long queryLong(SupportSQLiteDatabase sqlite, String sql) {
+        Cursor cursor = sqlite.query(sql);
+        try {
+            // Algunos PRAGMA (incremental_vacuum) se ejecutan al recorrer el cursor
+            long value = 0;
+            boolean first = true;
+            while (cursor.moveToNext()) {
+                if (first) {
+                    value = cursor.getLong(0);
+                    first = false;
+                }
+            }
+            return value;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        try {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            out.close();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -5,18 +5,24 @@ package com.example.mensajeautomatico;
  * Diferente de MessageEntity que es para la base de datos.
  */
 public class Message {
+    private int id;
     private String phoneNumber;
     private String messageText;
     private String timestamp;
     private String status;
 
-    public Message(String phoneNumber, String messageText, String timestamp, String status) {
+    public Message(int id, String phoneNumber, String messageText, String timestamp, String status) {
+        this.id = id;
         this.phoneNumber = phoneNumber;
         this.messageText = messageText;
         this.timestamp = timestamp;
         this.status = status;
     }
 
+    public int getId() {
+        return id;
+    }
+
     public String getPhoneNumber() {
         return phoneNumber;
     }
@@ -32,4 +38,19 @@ public class Message {
     public String getStatus() {
         return status;
     }
-}
\ No newline at end of file
+
+    /**
+     * Compara el contenido visible, para saber si una fila tiene que volver a pintarse.
+     */
+    public boolean hasSameContent(Message other) {
+        return id == other.id
+                && equalsOrNull(phoneNumber, other.phoneNumber)
+                && equalsOrNull(messageText, other.messageText)
+                && equalsOrNull(timestamp, other.timestamp)
+                && equalsOrNull(status, other.status);
+    }
+
+    private static boolean equalsOrNull(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
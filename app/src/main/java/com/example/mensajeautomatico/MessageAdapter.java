@@ -7,20 +7,35 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
-import java.util.List;
 
 /**
  * Adaptador para el RecyclerView que muestra los mensajes en DashboardActivity.
+ * Las listas nuevas se comparan con la anterior en segundo plano (DiffUtil), así que
+ * un cambio de estado solo vuelve a pintar la fila afectada.
  */
-public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageViewHolder> {
+public class MessageAdapter extends ListAdapter<Message, MessageAdapter.MessageViewHolder> {
+
+    private static final DiffUtil.ItemCallback<Message> DIFF_CALLBACK = new DiffUtil.ItemCallback<Message>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Message oldItem, @NonNull Message newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Message oldItem, @NonNull Message newItem) {
+            return oldItem.hasSameContent(newItem);
+        }
+    };
 
     private final Context context;
-    private final List<Message> messageList;
 
-    public MessageAdapter(Context context, List<Message> messageList) {
+    public MessageAdapter(Context context) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.messageList = messageList;
     }
 
     @NonNull
@@ -32,7 +47,7 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
 
     @Override
     public void onBindViewHolder(@NonNull MessageViewHolder holder, int position) {
-        Message message = messageList.get(position);
+        Message message = getItem(position);
         holder.tvPhoneNumber.setText(message.getPhoneNumber());
         holder.tvMessageText.setText(message.getMessageText());
         holder.tvTimestamp.setText(message.getTimestamp());
@@ -41,24 +56,21 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
         // Cambiar color según el estado
         switch (message.getStatus()) {
             case "Enviado":
-                holder.tvStatus.setTextColor(context.getResources().getColor(R.color.green));
+                holder.tvStatus.setTextColor(ContextCompat.getColor(context, R.color.green));
                 break;
             case "Pendiente":
-                holder.tvStatus.setTextColor(context.getResources().getColor(R.color.orange));
+            case "Enviando":
+            case "Reintentando":
+                holder.tvStatus.setTextColor(ContextCompat.getColor(context, R.color.orange));
                 break;
             case "Error":
-                holder.tvStatus.setTextColor(context.getResources().getColor(R.color.red));
+                holder.tvStatus.setTextColor(ContextCompat.getColor(context, R.color.red));
                 break;
             default:
                 holder.tvStatus.setTextColor(Color.BLACK);
         }
     }
 
-    @Override
-    public int getItemCount() {
-        return messageList.size();
-    }
-
     public static class MessageViewHolder extends RecyclerView.ViewHolder {
         TextView tvPhoneNumber, tvMessageText, tvTimestamp, tvStatus;
 
@@ -0,0 +1,14 @@
+package com.example.mensajeautomatico;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+@Dao
+public interface MessageArchiveDao {
+    @Insert
+    long insert(MessageArchiveEntity archive);
+
+    @Query("SELECT COALESCE(SUM(rowCount), 0) FROM message_archive")
+    long getArchivedMessageCount();
+}
@@ -0,0 +1,33 @@
+package com.example.mensajeautomatico;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Lote de mensajes antiguos archivados. Cada fila guarda varios mensajes ya enviados
+ * o fallidos serializados en JSON y comprimidos con GZIP, para que dejen de ocupar
+ * sitio (y de costar tiempo) en la tabla "messages".
+ */
+@Entity(tableName = "message_archive")
+public class MessageArchiveEntity {
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+
+    public long archivedAt;
+    public long firstCreatedAt;
+    public long lastCreatedAt;
+    public int rowCount;
+
+    @NonNull
+    public byte[] payload;
+
+    public MessageArchiveEntity(long archivedAt, long firstCreatedAt, long lastCreatedAt,
+                                int rowCount, @NonNull byte[] payload) {
+        this.archivedAt = archivedAt;
+        this.firstCreatedAt = firstCreatedAt;
+        this.lastCreatedAt = lastCreatedAt;
+        this.rowCount = rowCount;
+        this.payload = payload;
+    }
+}
@@ -1,9 +1,12 @@
 package com.example.mensajeautomatico;
 
+import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.RawQuery;
 import androidx.room.Update;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
 import java.util.List;
 
@@ -12,15 +15,129 @@ public interface MessageDao {
     @Insert
     long insert(MessageEntity message); // <- EL CAMBIO ESTÁ AQUÍ, AHORA DEVUELVE EL ID
 
+    // Inserta todas las filas en una única transacción y devuelve los ids en el mismo orden
+    @Insert
+    long[] insertAll(List<MessageEntity> messages);
+
     @Update
     void update(MessageEntity message);
 
+    // Usa el índice index_messages_createdAt
     @Query("SELECT * FROM messages ORDER BY createdAt DESC")
     List<MessageEntity> getAllMessages();
 
-    @Query("SELECT * FROM messages WHERE status = 'Programado' AND scheduledTime <= :currentTime")
+    // Paginación por clave (keyset) sobre (createdAt, id): cada página recorre solo sus
+    // filas del índice index_messages_createdAt, sin OFFSET, sea cual sea el tamaño de la tabla.
+    @Query("SELECT * FROM messages ORDER BY createdAt DESC, id DESC LIMIT :limit")
+    List<MessageEntity> getFirstMessagesPage(int limit);
+
+    // Las :limit filas más recientes; Room vuelve a emitir la lista solo cuando cambia la tabla
+    @Query("SELECT * FROM messages ORDER BY createdAt DESC, id DESC LIMIT :limit")
+    LiveData<List<MessageEntity>> observeLatestMessages(int limit);
+
+    @Query("SELECT * FROM messages WHERE createdAt <= :createdAt AND (createdAt < :createdAt OR id < :id) "
+            + "ORDER BY createdAt DESC, id DESC LIMIT :limit")
+    List<MessageEntity> getMessagesPageBefore(long createdAt, int id, int limit);
+
+    // Búsqueda de texto completo; la consulta la construye MessageSearch
+    @RawQuery(observedEntities = MessageEntity.class)
+    List<MessageEntity> searchMessages(SupportSQLiteQuery query);
+
+    // Recuento de una consulta construida por MessageSearch
+    @RawQuery
+    int countSearch(SupportSQLiteQuery query);
+
+    // Usa el índice index_messages_status_scheduledTime
+    @Query("SELECT * FROM messages WHERE status = " + MessageStatus.SCHEDULED
+            + " AND scheduledTime <= :currentTime ORDER BY scheduledTime")
     List<MessageEntity> getScheduledMessages(long currentTime);
 
+    // Actualizaciones de estado dirigidas: solo tocan la columna status, sin leer antes la fila
+    @Query("UPDATE messages SET status = :status WHERE id = :messageId")
+    int updateStatus(int messageId, int status);
+
+    @Query("UPDATE messages SET status = :status WHERE id IN (:messageIds)")
+    int updateStatusBulk(List<Integer> messageIds, int status);
+
+    // Mensajes terminados con un estado (Enviado o Error) cuya hora programada es anterior
+    // al corte, de la más antigua a la más reciente. La antigüedad se mide desde el envío
+    // previsto, no desde la creación: un mensaje creado hace meses para dentro de unas
+    // semanas no se archiva nada más enviarse. Recorre el índice
+    // index_messages_status_scheduledTime solo por debajo del corte.
+    @Query("SELECT * FROM messages WHERE status = :status AND scheduledTime < :cutoff "
+            + "ORDER BY scheduledTime LIMIT :limit")
+    List<MessageEntity> getArchivableMessages(int status, long cutoff, int limit);
+
+    @Query("DELETE FROM messages WHERE id IN (:messageIds)")
+    int deleteByIds(List<Integer> messageIds);
+
+    // Los :limit mensajes vencidos de un carril, por fecha programada; usa el índice
+    // (status, priority, scheduledTime)
+    @Query("SELECT * FROM messages WHERE status = " + MessageStatus.SCHEDULED
+            + " AND priority = :priority AND scheduledTime <= :currentTime ORDER BY scheduledTime LIMIT :limit")
+    List<MessageEntity> getDueMessagesInLane(int priority, long currentTime, int limit);
+
+    // Próxima fecha programada pendiente (nulo si no hay ninguna); una sola búsqueda en el índice
+    @Query("SELECT MIN(scheduledTime) FROM messages WHERE status = " + MessageStatus.SCHEDULED)
+    Long getNextScheduledTime();
+
+    // Resumen de la cola en una sola consulta sobre el índice (status, scheduledTime)
+    @Query("SELECT COUNT(*) AS pending, COALESCE(SUM(scheduledTime <= :currentTime), 0) AS overdue, "
+            + "MIN(scheduledTime) AS earliestScheduledTime FROM messages WHERE status = " + MessageStatus.SCHEDULED)
+    PendingSummary getPendingSummary(long currentTime);
+
+    // Devuelve a la cola los envíos que quedaron a medias (por ejemplo, al apagar el teléfono)
+    @Query("UPDATE messages SET status = " + MessageStatus.SCHEDULED + " WHERE status = " + MessageStatus.SENDING)
+    int releaseInterruptedSends();
+
+    // Reserva los mensajes para enviarlos: solo cambia los que siguen programados o en
+    // espera de reintento, y anota cuándo y con qué modo se entregaron
+    @Query("UPDATE messages SET status = " + MessageStatus.SENDING + ", dispatchedAt = :dispatchedAt, "
+            + "dispatchMode = :dispatchMode WHERE id IN (:messageIds) AND status IN (" + MessageStatus.SCHEDULED
+            + ", " + MessageStatus.RETRY + ")")
+    int claimForSending(List<Integer> messageIds, long dispatchedAt, int dispatchMode);
+
+    // Retraso (entrega real - hora programada) de los últimos envíos de un modo; usa
+    // el índice (dispatchMode, dispatchedAt)
+    @Query("SELECT dispatchedAt - scheduledTime FROM messages WHERE dispatchMode = :dispatchMode "
+            + "AND dispatchedAt IS NOT NULL ORDER BY dispatchedAt DESC LIMIT :limit")
+    long[] getRecentDispatchSkews(int dispatchMode, int limit);
+
+    // Reintentos vencidos por orden de próximo intento; usa el índice (status, nextAttemptAt)
+    @Query("SELECT * FROM messages WHERE status = " + MessageStatus.RETRY
+            + " AND nextAttemptAt <= :currentTime ORDER BY nextAttemptAt LIMIT :limit")
+    List<MessageEntity> getDueRetries(long currentTime, int limit);
+
+    @Query("SELECT MIN(nextAttemptAt) FROM messages WHERE status = " + MessageStatus.RETRY)
+    Long getNextRetryTime();
+
+    // Fallo transitorio: otro intento en nextAttemptAt
+    @Query("UPDATE messages SET status = " + MessageStatus.RETRY + ", attemptCount = attemptCount + 1, "
+            + "lastError = :error, nextAttemptAt = :nextAttemptAt WHERE id = :messageId")
+    int scheduleRetry(int messageId, String error, long nextAttemptAt);
+
+    // Fallo definitivo: sin más intentos
+    @Query("UPDATE messages SET status = " + MessageStatus.ERROR + ", attemptCount = attemptCount + 1, "
+            + "lastError = :error, nextAttemptAt = NULL WHERE id = :messageId")
+    int markFailed(int messageId, String error);
+
+    // Mensajes periódicos entre los indicados (búsqueda por clave primaria)
+    @Query("SELECT * FROM messages WHERE id IN (:messageIds) AND recurrenceRule IS NOT NULL")
+    List<MessageEntity> getRecurringByIds(List<Integer> messageIds);
+
+    // La regla pasa a la siguiente ocurrencia: la fila enviada deja de ser periódica
+    @Query("UPDATE messages SET recurrenceRule = NULL WHERE id IN (:messageIds)")
+    void clearRecurrence(List<Integer> messageIds);
+
+    // Última entrega a un destinatario; usa el índice (phoneNumber, dispatchedAt)
+    @Query("SELECT MAX(dispatchedAt) FROM messages WHERE phoneNumber = :phoneNumber")
+    Long getLastDispatchedAt(String phoneNumber);
+
+    // Mensajes entregados al servicio desde un momento dado, en cualquier modo
+    @Query("SELECT COUNT(*) FROM messages WHERE dispatchMode IN (" + MessageDispatcher.MODE_WORK_MANAGER + ", "
+            + MessageDispatcher.MODE_EXACT_ALARM + ") AND dispatchedAt >= :since")
+    int countDispatchedSince(long since);
+
     @Query("SELECT * FROM messages WHERE id = :messageId")
     MessageEntity getMessageById(int messageId);
-}
\ No newline at end of file
+}
@@ -0,0 +1,236 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trabajo único que envía los mensajes vencidos en orden de fecha programada y
+ * después vuelve a programarse para el siguiente (ver MessageDispatcher).
+ * Los vencidos salen por carril de prioridad y, dentro de cada uno, por fecha
+ * programada: cada carril se lee con su propia consulta ordenada por el índice
+ * (status, priority, scheduledTime) y se mezcla con sus reintentos (orderDue), así que
+ * un mensaje urgente adelanta a una campaña entre un envío y el siguiente.
+ * SendRateLimiter decide cuántos salen en cada ejecución: los retenidos siguen
+ * programados y el despachador vuelve cuando el limitador los deje pasar.
+ */
+public class MessageDispatchWorker extends Worker {
+
+    private static final String TAG = "MessageDispatchWorker";
+    // Mensajes por ejecución; si quedan más vencidos se vuelve a ejecutar enseguida
+    static final int MAX_BATCH = 50;
+    // Modo recuperación tras un reinicio: lotes pequeños y espaciados
+    static final int CATCH_UP_BATCH = 10;
+    static final long CATCH_UP_INTERVAL_MS = 30_000;
+
+    public MessageDispatchWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            dispatchDue(getApplicationContext(), MessageDispatcher.MODE_WORK_MANAGER);
+            return Result.success();
+        } catch (Exception e) {
+            Log.e(TAG, "Error al despachar mensajes: " + e.getMessage());
+            return Result.retry();
+        }
+    }
+
+    /**
+     * Última entrega a un destinatario (nulo si nunca se le ha escrito).
+     */
+    interface RecipientHistory {
+        Long lastDispatchedAt(String phoneNumber);
+    }
+
+    /**
+     * Mensajes que pueden salir en esta ejecución y, si el limitador retuvo alguno,
+     * cuánto falta para que pueda salir (0 si ninguno).
+     */
+    static final class Selection {
+        final List<MessageEntity> allowed;
+        final long throttleWait;
+
+        Selection(List<MessageEntity> allowed, long throttleWait) {
+            this.allowed = allowed;
+            this.throttleWait = throttleWait;
+        }
+    }
+
+    /**
+     * Orden de salida de los vencidos: carril a carril (ver MessagePriority) y, dentro de
+     * cada uno, por hora, mezclando los programados (dueByLane, cada carril ya ordenado
+     * por scheduledTime) con los reintentos (ordenados por nextAttemptAt).
+     */
+    static List<MessageEntity> orderDue(List<List<MessageEntity>> dueByLane, List<MessageEntity> retries) {
+        List<MessageEntity> ordered = new ArrayList<>();
+        for (int lane = 0; lane < dueByLane.size(); lane++) {
+            List<MessageEntity> due = dueByLane.get(lane);
+            int next = 0;
+            for (MessageEntity retry : retries) {
+                // Las prioridades fuera de rango van al último carril
+                int retryLane = Math.max(0, Math.min(dueByLane.size() - 1, retry.priority));
+                if (retryLane != lane) {
+                    continue;
+                }
+                while (next < due.size() && due.get(next).scheduledTime <= retry.nextAttemptAt) {
+                    ordered.add(due.get(next++));
+                }
+                ordered.add(retry);
+            }
+            while (next < due.size()) {
+                ordered.add(due.get(next++));
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Recorre los vencidos en orden y se queda con los que el limitador deja salir en
+     * now: salta los destinatarios que recibieron un mensaje hace poco y se detiene al
+     * acabarse las fichas.
+     */
+    static Selection select(List<MessageEntity> ordered, SendRateLimiter limiter, RecipientHistory history, long now) {
+        List<MessageEntity> allowed = new ArrayList<>();
+        Map<String, Long> lastByPhone = new HashMap<>();
+        long throttleWait = 0;
+        for (MessageEntity message : ordered) {
+            if (message.phoneNumber != null) {
+                Long last = lastByPhone.containsKey(message.phoneNumber)
+                        ? lastByPhone.get(message.phoneNumber)
+                        : history.lastDispatchedAt(message.phoneNumber);
+                long recipientWait = limiter.recipientDelay(last, now);
+                if (recipientWait > 0) {
+                    throttleWait = throttleWait == 0 ? recipientWait : Math.min(throttleWait, recipientWait);
+                    continue;
+                }
+            }
+            long tokenWait = limiter.acquire(now);
+            if (tokenWait > 0) {
+                // Sin fichas: ningún otro mensaje puede salir antes
+                throttleWait = throttleWait == 0 ? tokenWait : Math.min(throttleWait, tokenWait);
+                break;
+            }
+            allowed.add(message);
+            if (message.phoneNumber != null) {
+                lastByPhone.put(message.phoneNumber, now);
+            }
+        }
+        return new Selection(allowed, throttleWait);
+    }
+
+    /**
+     * Envía los mensajes vencidos y vuelve a programar el despachador. Lo usan tanto este
+     * trabajo como la alarma exacta (DispatchAlarmReceiver); mode queda anotado en cada
+     * mensaje para comparar el retraso de los dos mecanismos.
+     */
+    static void dispatchDue(Context context, int mode) {
+        long now = System.currentTimeMillis();
+        long startElapsed = SystemClock.elapsedRealtime();
+
+        if (!MessageSender.isAccessibilityServiceEnabled(context)) {
+            Log.e(TAG, "El servicio de accesibilidad no está activo. Reintentando más tarde...");
+            MessageDispatcher.armAfterAccessibilityFailure(context, now);
+            return;
+        }
+        MessageDispatcher.resetAccessibilityFailures(context);
+
+        AppDatabase db = AppDatabase.getDatabase(context);
+        // Modo recuperación mientras el mensaje pendiente más antiguo sea anterior al corte
+        long catchUpCutoff = MessageDispatcher.getCatchUpCutoff(context);
+        boolean catchingUp = false;
+        if (catchUpCutoff > 0) {
+            Long next = db.messageDao().getNextScheduledTime();
+            catchingUp = next != null && next < catchUpCutoff;
+            if (!catchingUp) {
+                MessageDispatcher.stopCatchUp(context);
+            }
+        }
+        // Vencidos por carril, del más prioritario al menos, hasta llenar el lote; la
+        // consulta de cada carril ya los devuelve por fecha programada
+        int batchSize = catchingUp ? CATCH_UP_BATCH : MAX_BATCH;
+        List<List<MessageEntity>> dueByLane = new ArrayList<>(MessagePriority.LANE_COUNT);
+        int dueCount = 0;
+        for (int lane = 0; lane < MessagePriority.LANE_COUNT; lane++) {
+            List<MessageEntity> due = dueCount < batchSize
+                    ? db.messageDao().getDueMessagesInLane(lane, now, batchSize - dueCount)
+                    : Collections.<MessageEntity>emptyList();
+            dueByLane.add(due);
+            dueCount += due.size();
+        }
+        boolean moreDue = dueCount >= batchSize;
+        // Reintentos vencidos, con su propio límite para que una campaña no los deje sin
+        // sitio; entran en su carril por la hora del nuevo intento
+        List<MessageEntity> retries = db.messageDao().getDueRetries(now, batchSize);
+        dueCount += retries.size();
+        moreDue |= retries.size() >= batchSize;
+
+        // Elegir los que el limitador deja salir ahora; el resto sigue programado
+        SendRateLimiter limiter = SendRateLimiter.load(context);
+        MessageDao dao = db.messageDao();
+        Selection selection = select(orderDue(dueByLane, retries), limiter, dao::getLastDispatchedAt, now);
+        List<MessageEntity> allowed = selection.allowed;
+        long throttleWait = selection.throttleWait;
+        limiter.saveState(context);
+
+        if (!allowed.isEmpty()) {
+            // Reservar antes de enviar para que la siguiente ejecución no los repita. Solo
+            // se envían los que esta ejecución ha reservado de verdad: otra (la alarma
+            // exacta y WorkManager pueden coincidir) pudo llevárselos entre la lectura y aquí
+            long dispatchedAt = System.currentTimeMillis();
+            List<MessageEntity> claimedMessages = db.runInTransaction(() -> {
+                List<MessageEntity> won = new ArrayList<>(allowed.size());
+                for (MessageEntity candidate : allowed) {
+                    if (db.messageDao().claimForSending(Collections.singletonList(candidate.id), dispatchedAt, mode) == 1) {
+                        won.add(candidate);
+                    }
+                }
+                return won;
+            });
+            if (claimedMessages.size() < allowed.size()) {
+                Log.w(TAG, (allowed.size() - claimedMessages.size()) + " mensajes ya reservados por otra ejecución.");
+            }
+            SendTracer tracer = SendTracer.getInstance(context);
+            tracer.recordDispatch(claimedMessages, startElapsed, now);
+
+            // Se envían todos seguidos: el servicio los pone en su cola (SendStateMachine)
+            for (MessageEntity claimed : claimedMessages) {
+                if (claimed.phoneNumber == null) {
+                    Log.e(TAG, "Número nulo para el mensaje ID: " + claimed.id);
+                    MessageStatusWriter.getInstance(context).submit(claimed.id, MessageStatus.ERROR);
+                    continue;
+                }
+                // Solo el id: el servicio lee el texto al enviar
+                MessageSender.send(context, claimed.id);
+                tracer.record(claimed.id, SendTracer.STAGE_BROADCAST_SENT);
+            }
+            Log.d(TAG, "Despachados " + claimedMessages.size() + " de " + dueCount + " mensajes vencidos.");
+        }
+
+        if (catchingUp) {
+            // Siguiente lote de recuperación tras la pausa
+            MessageDispatcher.armAt(context, now + Math.max(CATCH_UP_INTERVAL_MS, throttleWait));
+        } else if (throttleWait > 0) {
+            // Quedan vencidos retenidos por el limitador: volver cuando puedan salir
+            MessageDispatcher.armAt(context, now + throttleWait);
+        } else if (moreDue) {
+            // Quedan mensajes vencidos: seguir en una nueva ejecución
+            MessageDispatcher.armAt(context, now);
+        } else {
+            MessageDispatcher.rearm(context);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.mensajeautomatico;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.work.BackoffPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Programa el único trabajo de WorkManager que envía los mensajes.
+ * En lugar de una petición por mensaje, hay una sola cadena de trabajo
+ * (MessageDispatchWorker) que se despierta en la próxima fecha programada, envía todo
+ * lo vencido y se vuelve a programar para la siguiente. Así el número de filas en la
+ * base de datos de WorkManager no depende del tamaño de la cola.
+ * En modo exacto (opcional, ver isExactModeEnabled) el despertar se programa con una
+ * alarma exacta de AlarmManager en lugar de WorkManager, que Doze puede retrasar varios
+ * minutos; la alarma ejecuta el mismo envío desde DispatchAlarmReceiver.
+ * Los métodos acceden a la base de datos y deben llamarse fuera del hilo principal.
+ */
+public final class MessageDispatcher {
+
+    private static final String TAG = "MessageDispatcher";
+    public static final String WORK_NAME = "despachador_mensajes";
+
+    private static final String PREFS_NAME = "app_prefs";
+    // Momento para el que está programado el despachador (0 si no hay nada pendiente)
+    private static final String KEY_ARMED_AT = "dispatcher_armed_at";
+    // Los mensajes programados antes de este momento se envían en modo recuperación
+    private static final String KEY_CATCH_UP_BEFORE = "dispatcher_catch_up_before";
+    // Comprobaciones seguidas con el servicio de accesibilidad desactivado
+    private static final String KEY_ACCESSIBILITY_FAILURES = "dispatcher_accessibility_failures";
+    // Programar con alarmas exactas en lugar de WorkManager
+    public static final String KEY_EXACT_ALARM_MODE = "exact_alarm_mode";
+
+    // Modo con el que se despachó un mensaje (columna dispatchMode)
+    public static final int MODE_WORK_MANAGER = 0;
+    public static final int MODE_EXACT_ALARM = 1;
+
+    private static final int ALARM_REQUEST_CODE = 1001;
+
+    private MessageDispatcher() {
+    }
+
+    /**
+     * Avisa de que se han programado mensajes; adelanta el despachador si el más
+     * temprano vence antes de lo que estaba previsto.
+     */
+    public static void onMessagesScheduled(Context context, long earliestScheduledTime) {
+        synchronized (MessageDispatcher.class) {
+            long armedAt = prefs(context).getLong(KEY_ARMED_AT, 0);
+            if (armedAt == 0 || earliestScheduledTime < armedAt) {
+                arm(context, earliestScheduledTime);
+            }
+        }
+    }
+
+    /**
+     * Programa el despachador para el próximo mensaje pendiente (programado o en espera
+     * de reintento) según la base de datos.
+     */
+    public static void rearm(Context context) {
+        synchronized (MessageDispatcher.class) {
+            MessageDao dao = AppDatabase.getDatabase(context).messageDao();
+            Long next = dao.getNextScheduledTime();
+            Long nextRetry = dao.getNextRetryTime();
+            if (next == null || (nextRetry != null && nextRetry < next)) {
+                next = nextRetry;
+            }
+            if (next == null) {
+                prefs(context).edit().putLong(KEY_ARMED_AT, 0).apply();
+                Log.d(TAG, "No hay mensajes pendientes.");
+                return;
+            }
+            arm(context, next);
+        }
+    }
+
+    /**
+     * Programa el despachador para un momento concreto (por ejemplo, para reintentar
+     * cuando el servicio de accesibilidad no está activo).
+     */
+    public static void armAt(Context context, long time) {
+        synchronized (MessageDispatcher.class) {
+            arm(context, time);
+        }
+    }
+
+    /**
+     * El servicio de accesibilidad sigue desactivado: volver a comprobarlo con la
+     * espera creciente de RetryPolicy en lugar de despertar cada minuto indefinidamente.
+     */
+    public static void armAfterAccessibilityFailure(Context context, long now) {
+        SharedPreferences prefs = prefs(context);
+        int failures = prefs.getInt(KEY_ACCESSIBILITY_FAILURES, 0) + 1;
+        prefs.edit().putInt(KEY_ACCESSIBILITY_FAILURES, failures).apply();
+        long delay = RetryPolicy.load(context).delayFor(failures, new Random());
+        Log.d(TAG, "Servicio de accesibilidad inactivo (" + failures + " comprobaciones); siguiente en " + delay + " ms.");
+        armAt(context, now + delay);
+    }
+
+    /**
+     * El servicio de accesibilidad vuelve a estar activo: reiniciar la espera y
+     * programar el despachador para lo pendiente.
+     */
+    public static void onAccessibilityAvailable(Context context) {
+        resetAccessibilityFailures(context);
+        rearm(context);
+    }
+
+    static void resetAccessibilityFailures(Context context) {
+        SharedPreferences prefs = prefs(context);
+        if (prefs.contains(KEY_ACCESSIBILITY_FAILURES)) {
+            prefs.edit().remove(KEY_ACCESSIBILITY_FAILURES).apply();
+        }
+    }
+
+    /**
+     * Activa el modo recuperación para los mensajes vencidos antes de cutoff: el
+     * despachador los envía en lotes pequeños separados por una pausa.
+     */
+    public static void startCatchUp(Context context, long cutoff) {
+        prefs(context).edit().putLong(KEY_CATCH_UP_BEFORE, cutoff).apply();
+    }
+
+    public static void stopCatchUp(Context context) {
+        prefs(context).edit().remove(KEY_CATCH_UP_BEFORE).apply();
+    }
+
+    /**
+     * Momento antes del cual los mensajes vencidos se envían en modo recuperación (0 si
+     * no está activo).
+     */
+    public static long getCatchUpCutoff(Context context) {
+        return prefs(context).getLong(KEY_CATCH_UP_BEFORE, 0);
+    }
+
+    /**
+     * Activa o desactiva el modo exacto y vuelve a programar el despachador con el
+     * mecanismo elegido.
+     */
+    public static void setExactModeEnabled(Context context, boolean enabled) {
+        prefs(context).edit().putBoolean(KEY_EXACT_ALARM_MODE, enabled).apply();
+        rearm(context);
+    }
+
+    /**
+     * Modo exacto pedido por el usuario (puede no estar disponible, ver activeMode).
+     */
+    public static boolean isExactModeEnabled(Context context) {
+        return prefs(context).getBoolean(KEY_EXACT_ALARM_MODE, false);
+    }
+
+    /**
+     * Indica si el sistema permite alarmas exactas. Desde Android 12 el usuario puede
+     * retirar el permiso SCHEDULE_EXACT_ALARM.
+     */
+    public static boolean canScheduleExactAlarms(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S) {
+            return true;
+        }
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        return alarmManager != null && alarmManager.canScheduleExactAlarms();
+    }
+
+    /**
+     * Mecanismo con el que se programará el siguiente despertar.
+     */
+    public static int activeMode(Context context) {
+        return isExactModeEnabled(context) && canScheduleExactAlarms(context) ? MODE_EXACT_ALARM : MODE_WORK_MANAGER;
+    }
+
+    private static void arm(Context context, long time) {
+        long delay = Math.max(0, time - System.currentTimeMillis());
+        if (activeMode(context) == MODE_EXACT_ALARM && setExactAlarm(context, time)) {
+            // Solo un mecanismo programado a la vez
+            WorkManager.getInstance(context).cancelUniqueWork(WORK_NAME);
+            Log.d(TAG, "Alarma exacta programada dentro de " + delay + " ms.");
+        } else {
+            cancelAlarm(context);
+            // Si el trabajo falla, WorkManager lo repite con la espera base de RetryPolicy
+            OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(MessageDispatchWorker.class)
+                    .setInitialDelay(delay, TimeUnit.MILLISECONDS)
+                    .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, RetryPolicy.load(context).baseDelayMs,
+                            TimeUnit.MILLISECONDS)
+                    .build();
+            WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.REPLACE, request);
+            Log.d(TAG, "Despachador programado dentro de " + delay + " ms.");
+        }
+        prefs(context).edit().putLong(KEY_ARMED_AT, Math.max(time, 1)).apply();
+    }
+
+    /**
+     * Programa la alarma exacta. Devuelve false si el permiso se retiró después de
+     * comprobarlo en activeMode (el sistema lanza SecurityException), y entonces se usa
+     * WorkManager.
+     */
+    private static boolean setExactAlarm(Context context, long time) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        try {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, time, alarmIntent(context));
+            return true;
+        } catch (SecurityException e) {
+            Log.w(TAG, "Sin permiso de alarmas exactas; se usa WorkManager: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void cancelAlarm(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager != null) {
+            alarmManager.cancel(alarmIntent(context));
+        }
+    }
+
+    private static PendingIntent alarmIntent(Context context) {
+        Intent intent = new Intent(context, DispatchAlarmReceiver.class);
+        return PendingIntent.getBroadcast(context.getApplicationContext(), ALARM_REQUEST_CODE, intent,
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
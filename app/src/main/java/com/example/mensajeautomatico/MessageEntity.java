@@ -1,25 +1,59 @@
 package com.example.mensajeautomatico;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import androidx.annotation.NonNull;
 
-@Entity(tableName = "messages")
+@Entity(tableName = "messages",
+        indices = {
+                @Index(value = {"status", "scheduledTime"}),
+                @Index(value = {"createdAt"}),
+                @Index(value = {"templateId"}),
+                @Index(value = {"dispatchMode", "dispatchedAt"}),
+                @Index(value = {"phoneNumber", "dispatchedAt"}),
+                @Index(value = {"status", "priority", "scheduledTime"}),
+                @Index(value = {"status", "nextAttemptAt"})
+        })
 public class MessageEntity {
     @PrimaryKey(autoGenerate = true)
     public int id;
 
     public String phoneNumber;
-    public String messageText;
+    public String messageText; // Nulo cuando el texto viene de una plantilla
     public long scheduledTime;
-    public String status; // "Programado", "Enviado", "Error"
+    public int status; // Ver MessageStatus
     public long createdAt;
+    public Integer templateId;   // Plantilla en message_templates, o nulo
+    public String templateVars;  // Valores de las variables de la plantilla (JSON), o nulo
+    public Long dispatchedAt;    // Momento real en que se entregó al servicio, o nulo
+    @ColumnInfo(defaultValue = "0")
+    public int dispatchMode;     // MessageDispatcher.MODE_WORK_MANAGER o MODE_EXACT_ALARM
+    @ColumnInfo(defaultValue = "1")
+    public int priority = MessagePriority.NORMAL; // Ver MessagePriority
+    public String recurrenceRule; // Regla de repetición (ver RecurrenceRule), solo en la próxima ocurrencia
+    @ColumnInfo(defaultValue = "0")
+    public int attemptCount;      // Intentos fallidos
+    public String lastError;      // Motivo del último fallo, o nulo
+    public Long nextAttemptAt;    // Próximo intento si status es RETRY, o nulo
 
-    public MessageEntity(String phoneNumber, String messageText, long scheduledTime, String status) {
+    public MessageEntity(String phoneNumber, String messageText, long scheduledTime, int status) {
         this.phoneNumber = phoneNumber;
         this.messageText = messageText;
         this.scheduledTime = scheduledTime;
         this.status = status;
         this.createdAt = System.currentTimeMillis();
     }
-}
\ No newline at end of file
+
+    /**
+     * Crea un mensaje cuyo texto se obtiene de una plantilla.
+     */
+    public static MessageEntity fromTemplate(String phoneNumber, int templateId, String templateVars,
+                                             long scheduledTime, int status) {
+        MessageEntity message = new MessageEntity(phoneNumber, null, scheduledTime, status);
+        message.templateId = templateId;
+        message.templateVars = templateVars;
+        return message;
+    }
+}
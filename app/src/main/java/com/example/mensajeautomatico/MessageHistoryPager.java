@@ -0,0 +1,84 @@
+package com.example.mensajeautomatico;
+
+import java.util.List;
+
+/**
+ * Carga el historial de mensajes por páginas usando paginación por clave sobre
+ * (createdAt, id). Recuerda la última fila entregada y pide la siguiente página a
+ * partir de ella, de modo que el coste de cada página no depende de cuántas filas
+ * tenga la tabla ni de cuántas se hayan cargado ya.
+ * Si se indica un texto de búsqueda, las páginas salen de MessageSearch con la misma
+ * paginación.
+ * Los métodos de carga acceden a la base de datos y deben llamarse fuera del hilo principal.
+ */
+public class MessageHistoryPager {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    private final MessageDao dao;
+    private final MessageSearch search;
+    private final String query;
+    private final int pageSize;
+
+    private boolean hasKey;
+    private long lastCreatedAt;
+    private int lastId;
+    private boolean endReached;
+
+    public MessageHistoryPager(MessageDao dao, int pageSize) {
+        this(dao, null, pageSize);
+    }
+
+    /**
+     * Paginador de los resultados de una búsqueda (o de todo el historial si query es
+     * nulo o vacío).
+     */
+    public MessageHistoryPager(MessageDao dao, String query, int pageSize) {
+        this.dao = dao;
+        this.search = new MessageSearch(dao);
+        this.query = query != null && !query.trim().isEmpty() ? query : null;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Hace que la siguiente página empiece justo después de la fila (createdAt, id), por
+     * ejemplo la última de una primera página que se observa en vivo por separado.
+     */
+    public synchronized void startAfter(long createdAt, int id) {
+        lastCreatedAt = createdAt;
+        lastId = id;
+        hasKey = true;
+        endReached = false;
+    }
+
+    public synchronized boolean isEndReached() {
+        return endReached;
+    }
+
+    /**
+     * Devuelve la siguiente página (vacía si ya no quedan filas).
+     */
+    public synchronized List<MessageEntity> loadNextPage() {
+        List<MessageEntity> page;
+        if (query != null) {
+            page = hasKey
+                    ? search.pageBefore(query, lastCreatedAt, lastId, pageSize)
+                    : search.firstPage(query, pageSize);
+        } else {
+            page = hasKey
+                    ? dao.getMessagesPageBefore(lastCreatedAt, lastId, pageSize)
+                    : dao.getFirstMessagesPage(pageSize);
+        }
+
+        if (!page.isEmpty()) {
+            MessageEntity last = page.get(page.size() - 1);
+            lastCreatedAt = last.createdAt;
+            lastId = last.id;
+            hasKey = true;
+        }
+        if (page.size() < pageSize) {
+            endReached = true;
+        }
+        return page;
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Importa mensajes desde un fichero CSV o TSV.
+ * Formato por fila: telefono, mensaje, fecha ("yyyy-MM-dd HH:mm" o milisegundos epoch).
+ * La primera fila se ignora si es una cabecera; en ese caso las columnas a partir de
+ * la cuarta son variables de la plantilla ({nombre} en el mensaje se sustituye por la
+ * columna "nombre" de cada fila). Cada texto distinto se guarda una sola vez como
+ * plantilla. El fichero se lee fila a fila y se
+ * guarda por bloques, cada uno (con sus plantillas nuevas) en su propia transacción,
+ * así que la memoria usada no depende del tamaño del fichero.
+ * Debe llamarse fuera del hilo principal.
+ */
+public class MessageImporter {
+
+    private static final String TAG = "MessageImporter";
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    // Textos distintos recordados durante una importación
+    private static final int MAX_REMEMBERED_TEMPLATES = 1000;
+
+    /**
+     * Recibe el avance de la importación después de cada bloque guardado.
+     */
+    public interface ProgressListener {
+        void onProgress(int imported, int rejected);
+    }
+
+    /**
+     * Resultado final de una importación.
+     */
+    public static class ImportResult {
+        public final int imported;
+        public final int rejected;
+        public final long elapsedMillis;
+
+        ImportResult(int imported, int rejected, long elapsedMillis) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedMillis > 0 ? imported * 1000.0 / elapsedMillis : imported;
+        }
+    }
+
+    private final Context context;
+    private final MessageScheduler scheduler;
+    private final MessageTemplates templates;
+    private final Map<String, Integer> templateIds = new HashMap<>();
+    private List<String> headerNames;
+    private final int chunkSize;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+
+    public MessageImporter(Context context) {
+        this(context, new MessageScheduler(context), DEFAULT_CHUNK_SIZE);
+    }
+
+    public MessageImporter(Context context, MessageScheduler scheduler, int chunkSize) {
+        this(context, scheduler, MessageTemplates.getInstance(context), chunkSize);
+    }
+
+    MessageImporter(Context context, MessageScheduler scheduler, MessageTemplates templates, int chunkSize) {
+        this.context = context.getApplicationContext();
+        this.scheduler = scheduler;
+        this.templates = templates;
+        this.chunkSize = chunkSize;
+        this.dateFormat.setLenient(false);
+    }
+
+    public ImportResult importFrom(Uri uri, ProgressListener listener) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(uri);
+        if (in == null) {
+            throw new IOException("No se pudo abrir el fichero: " + uri);
+        }
+        try {
+            return importFrom(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), listener);
+        } finally {
+            in.close();
+        }
+    }
+
+    public ImportResult importFrom(BufferedReader reader, ProgressListener listener) throws IOException {
+        long start = System.currentTimeMillis();
+        int imported = 0;
+        int rejected = 0;
+        int lineNumber = 0;
+        char delimiter = 0;
+        List<MessageEntity> chunk = new ArrayList<>(chunkSize);
+        // Texto de cada mensaje del bloque: su plantilla se crea al guardar el bloque
+        List<String> texts = new ArrayList<>(chunkSize);
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (delimiter == 0) {
+                delimiter = line.indexOf('\t') >= 0 ? '\t' : ',';
+            }
+
+            List<String> fields = parseLine(line, delimiter);
+            MessageEntity message = toMessage(fields, start);
+            if (message == null) {
+                // La primera fila puede ser la cabecera; no cuenta como rechazada
+                if (lineNumber == 1) {
+                    headerNames = fields;
+                } else {
+                    rejected++;
+                    Log.w(TAG, "Fila " + lineNumber + " no válida, se omite.");
+                }
+                continue;
+            }
+
+            chunk.add(message);
+            texts.add(fields.get(1).trim());
+            if (chunk.size() >= chunkSize) {
+                scheduleChunk(chunk, texts);
+                imported += chunk.size();
+                chunk = new ArrayList<>(chunkSize);
+                texts = new ArrayList<>(chunkSize);
+                if (listener != null) {
+                    listener.onProgress(imported, rejected);
+                }
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            scheduleChunk(chunk, texts);
+            imported += chunk.size();
+        }
+        if (listener != null) {
+            listener.onProgress(imported, rejected);
+        }
+
+        ImportResult result = new ImportResult(imported, rejected, System.currentTimeMillis() - start);
+        Log.d(TAG, String.format(Locale.US, "Importación terminada: %d filas, %d rechazadas, %d ms (%.1f filas/s)",
+                result.imported, result.rejected, result.elapsedMillis, result.rowsPerSecond()));
+        return result;
+    }
+
+    private MessageEntity toMessage(List<String> fields, long now) {
+        if (fields.size() < 3) {
+            return null;
+        }
+        String phoneNumber = normalizePhoneNumber(fields.get(0));
+        String messageText = fields.get(1).trim();
+        if (phoneNumber == null || messageText.isEmpty()) {
+            return null;
+        }
+        long scheduledTime = parseTime(fields.get(2).trim());
+        if (scheduledTime < now) {
+            return null;
+        }
+        // La plantilla se asigna al guardar el bloque (scheduleChunk)
+        MessageEntity message = MessageEntity.fromTemplate(phoneNumber, 0,
+                MessageTemplates.encodeVariables(variablesOf(fields)), scheduledTime, MessageStatus.SCHEDULED);
+        // Las importaciones son campañas: no deben retrasar a los mensajes programados a mano
+        message.priority = MessagePriority.BULK;
+        return message;
+    }
+
+    /**
+     * Guarda el bloque en una sola transacción junto con las plantillas nuevas de sus
+     * textos, en lugar de una transacción por cada texto distinto.
+     */
+    private void scheduleChunk(List<MessageEntity> chunk, List<String> texts) {
+        try {
+            scheduler.scheduleAll(chunk, () -> {
+                for (int i = 0; i < chunk.size(); i++) {
+                    chunk.get(i).templateId = templateIdFor(texts.get(i));
+                }
+            });
+        } catch (RuntimeException e) {
+            // Las plantillas creadas en la transacción deshecha ya no existen
+            templateIds.clear();
+            throw e;
+        }
+    }
+
+    private int templateIdFor(String messageText) {
+        Integer id = templateIds.get(messageText);
+        if (id == null) {
+            if (templateIds.size() >= MAX_REMEMBERED_TEMPLATES) {
+                templateIds.clear();
+            }
+            id = templates.intern(messageText);
+            templateIds.put(messageText, id);
+        }
+        return id;
+    }
+
+    private Map<String, String> variablesOf(List<String> fields) {
+        if (headerNames == null || fields.size() <= 3) {
+            return null;
+        }
+        Map<String, String> variables = new HashMap<>();
+        for (int i = 3; i < fields.size() && i < headerNames.size(); i++) {
+            String name = headerNames.get(i).trim();
+            if (!name.isEmpty()) {
+                variables.put(name, fields.get(i).trim());
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Número tal como se guarda (y acaba en la URL de WhatsApp): solo dígitos, con un "+"
+     * inicial opcional. Los espacios y guiones de separación se quitan. Devuelve null si
+     * hay otros caracteres o no tiene entre 6 y 15 dígitos.
+     */
+    static String normalizePhoneNumber(String value) {
+        String phoneNumber = value.trim();
+        StringBuilder normalized = new StringBuilder(phoneNumber.length());
+        int digits = 0;
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                normalized.append(c);
+                digits++;
+            } else if (c == '+' && i == 0) {
+                normalized.append(c);
+            } else if (c != ' ' && c != '-') {
+                return null;
+            }
+        }
+        return digits >= 6 && digits <= 15 ? normalized.toString() : null;
+    }
+
+    private long parseTime(String value) {
+        if (value.isEmpty()) {
+            return -1;
+        }
+        boolean numeric = true;
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                numeric = false;
+                break;
+            }
+        }
+        try {
+            if (numeric) {
+                return Long.parseLong(value);
+            }
+            return dateFormat.parse(value).getTime();
+        } catch (NumberFormatException | ParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Separa una línea respetando los campos entre comillas dobles ("" dentro de un
+     * campo entrecomillado representa una comilla).
+     */
+    static List<String> parseLine(String line, char delimiter) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+            } else if (c == delimiter) {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.mensajeautomatico;
+
+/**
+ * Carriles de prioridad de un mensaje tal y como se guardan en la tabla "messages".
+ * Un número menor sale antes: el despachador vacía los vencidos de cada carril, por
+ * orden de fecha programada, antes de pasar al siguiente.
+ */
+public final class MessagePriority {
+
+    public static final int URGENT = 0; // "Urgente"
+    public static final int NORMAL = 1; // "Normal": mensajes programados a mano
+    public static final int BULK = 2;   // "Masivo": campañas importadas
+
+    public static final int LANE_COUNT = 3;
+
+    private MessagePriority() {
+    }
+
+    /**
+     * Devuelve la etiqueta visible para un carril.
+     */
+    public static String toLabel(int priority) {
+        switch (priority) {
+            case URGENT:
+                return "Urgente";
+            case NORMAL:
+                return "Normal";
+            case BULK:
+                return "Masivo";
+            default:
+                return "Desconocida";
+        }
+    }
+}
@@ -12,13 +12,25 @@ import android.util.Log;
 public class MessageReceiver extends BroadcastReceiver {
 
     private static final String TAG = "MessageReceiver";
+    private static final String ACTION_QUICKBOOT_POWERON = "android.intent.action.QUICKBOOT_POWERON";
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+        String action = intent.getAction();
+        if (Intent.ACTION_BOOT_COMPLETED.equals(action) || ACTION_QUICKBOOT_POWERON.equals(action)) {
             Log.d(TAG, "Dispositivo reiniciado. Reprogramando mensajes...");
-            // Lógica para reprogramar mensajes pendientes.
-            // Esto implicaría una base de datos para almacenar los mensajes programados.
+            // La recuperación consulta la base de datos: se hace fuera del hilo principal
+            final PendingResult pendingResult = goAsync();
+            // Con la cola llena, en un hilo propio: rechazarlo dejaría sin reprogramar la cola
+            AppExecutors.executeOrSpawn(AppExecutors.from(context).diskIO(), "boot-recovery", () -> {
+                try {
+                    BootRecovery.recover(context.getApplicationContext());
+                } catch (Exception e) {
+                    Log.e(TAG, "Error al reprogramar mensajes: " + e.getMessage());
+                } finally {
+                    pendingResult.finish();
+                }
+            });
         }
     }
 }
@@ -0,0 +1,66 @@
+package com.example.mensajeautomatico;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Crea la siguiente ocurrencia de los mensajes periódicos cuando termina la actual.
+ * Solo existe una fila programada por regla: al terminar un envío (enviado o con
+ * error) se calcula la siguiente fecha a partir de la anterior, se inserta una copia
+ * programada con la regla y se quita la regla de la fila terminada.
+ */
+public final class MessageRecurrence {
+
+    private static final String TAG = "MessageRecurrence";
+
+    private MessageRecurrence() {
+    }
+
+    /**
+     * Materializa la siguiente ocurrencia de los mensajes periódicos de messageIds.
+     * Debe llamarse dentro de una transacción. Devuelve la fecha de la ocurrencia más
+     * temprana creada, o -1 si no se creó ninguna.
+     */
+    static long materializeNext(MessageDao dao, List<Integer> messageIds, long now) {
+        List<MessageEntity> recurring = dao.getRecurringByIds(messageIds);
+        if (recurring.isEmpty()) {
+            return -1;
+        }
+        List<Integer> finished = new ArrayList<>(recurring.size());
+        List<MessageEntity> next = new ArrayList<>(recurring.size());
+        long earliest = -1;
+        for (MessageEntity message : recurring) {
+            finished.add(message.id);
+            long nextTime;
+            try {
+                nextTime = RecurrenceRule.parse(message.recurrenceRule)
+                        .nextAfter(message.scheduledTime, Math.max(now, message.scheduledTime));
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "Regla no válida en el mensaje " + message.id + ": " + e.getMessage());
+                continue;
+            }
+            if (nextTime < 0) {
+                continue;
+            }
+            next.add(nextOccurrence(message, nextTime));
+            earliest = earliest < 0 ? nextTime : Math.min(earliest, nextTime);
+        }
+        dao.clearRecurrence(finished);
+        if (!next.isEmpty()) {
+            dao.insertAll(next);
+        }
+        return earliest;
+    }
+
+    private static MessageEntity nextOccurrence(MessageEntity message, long scheduledTime) {
+        MessageEntity copy = new MessageEntity(message.phoneNumber, message.messageText, scheduledTime,
+                MessageStatus.SCHEDULED);
+        copy.templateId = message.templateId;
+        copy.templateVars = message.templateVars;
+        copy.priority = message.priority;
+        copy.recurrenceRule = message.recurrenceRule;
+        return copy;
+    }
+}
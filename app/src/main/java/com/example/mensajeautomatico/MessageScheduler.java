@@ -0,0 +1,67 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Punto único para programar mensajes: guarda las filas en la base de datos y avisa
+ * al despachador (MessageDispatcher). Pensado para usarse tanto con un solo mensaje
+ * como con lotes grandes (importaciones): cada lote es una transacción y, como mucho,
+ * una reprogramación del único trabajo de WorkManager.
+ * Debe llamarse fuera del hilo principal.
+ */
+public class MessageScheduler {
+
+    private final Context context;
+    private final AppDatabase db;
+
+    public MessageScheduler(Context context) {
+        this(context, AppDatabase.getDatabase(context.getApplicationContext()));
+    }
+
+    MessageScheduler(Context context, AppDatabase db) {
+        this.context = context.getApplicationContext();
+        this.db = db;
+    }
+
+    /**
+     * Programa un único mensaje y devuelve su id.
+     */
+    public long schedule(MessageEntity message) {
+        List<MessageEntity> single = new ArrayList<>(1);
+        single.add(message);
+        return scheduleAll(single)[0];
+    }
+
+    /**
+     * Inserta todos los mensajes en una transacción y adelanta el despachador si alguno
+     * vence antes de lo previsto. Devuelve los ids asignados en el mismo orden.
+     */
+    public long[] scheduleAll(List<MessageEntity> messages) {
+        return scheduleAll(messages, null);
+    }
+
+    /**
+     * Como scheduleAll, ejecutando antes beforeInsert dentro de la misma transacción (el
+     * importador crea ahí las plantillas de los mensajes del lote).
+     */
+    public long[] scheduleAll(List<MessageEntity> messages, Runnable beforeInsert) {
+        long[] ids = db.runInTransaction(() -> {
+            if (beforeInsert != null) {
+                beforeInsert.run();
+            }
+            return db.messageDao().insertAll(messages);
+        });
+
+        long earliest = Long.MAX_VALUE;
+        for (MessageEntity message : messages) {
+            earliest = Math.min(earliest, message.scheduledTime);
+        }
+        if (!messages.isEmpty()) {
+            MessageDispatcher.onMessagesScheduled(context, earliest);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.mensajeautomatico;
+
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Búsqueda de texto completo en el historial (número de teléfono y texto del mensaje).
+ * Usa dos tablas FTS4 de contenido externo: messages_fts sobre messages y
+ * message_templates_fts sobre message_templates, para encontrar también los mensajes
+ * cuyo texto viene de una plantilla. Las tablas se mantienen con triggers propios en
+ * lugar de los que genera Room para @Fts4, porque los de Room se disparan con
+ * cualquier UPDATE de messages y reindexarían la fila en cada cambio de estado.
+ * Los resultados se paginan por clave (createdAt, id), igual que el historial. La
+ * consulta es un UNION ALL de dos ramas: coincidencias en el propio mensaje y en su
+ * plantilla. La primera recorre index_messages_createdAt desde la clave y se detiene al
+ * llenar la página, en lugar de ordenar todas las coincidencias. La segunda hace lo
+ * mismo si las plantillas que coinciden tienen muchos mensajes; si tienen pocos, es más
+ * barato leerlos por index_messages_templateId y ordenarlos.
+ */
+public class MessageSearch {
+
+    private static final String MESSAGE_MATCH = "SELECT docid FROM messages_fts WHERE messages_fts MATCH ?";
+    private static final String TEMPLATE_MATCH =
+            "SELECT docid FROM message_templates_fts WHERE message_templates_fts MATCH ?";
+    private static final String KEY_FILTER = " AND createdAt <= ? AND (createdAt < ? OR id < ?)";
+    private static final String ORDER = " ORDER BY createdAt DESC, id DESC LIMIT ?";
+    // Con menos mensajes de plantilla que esto, la rama de plantillas usa su índice y ordena
+    private static final int SPARSE_TEMPLATE_MESSAGES = 2000;
+
+    private final MessageDao dao;
+
+    public MessageSearch(MessageDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Crea las tablas FTS y sus triggers. Se llama al crear la base de datos y desde la
+     * migración que las introduce.
+     */
+    static void createSearchTables(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `messages_fts` "
+                + "USING FTS4(`phoneNumber`, `messageText`, content=`messages`)");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `messages_fts_before_update` "
+                + "BEFORE UPDATE OF `phoneNumber`, `messageText` ON `messages` BEGIN "
+                + "DELETE FROM `messages_fts` WHERE `docid` = OLD.`id`; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `messages_fts_after_update` "
+                + "AFTER UPDATE OF `phoneNumber`, `messageText` ON `messages` BEGIN "
+                + "INSERT INTO `messages_fts`(`docid`, `phoneNumber`, `messageText`) "
+                + "VALUES (NEW.`id`, NEW.`phoneNumber`, NEW.`messageText`); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `messages_fts_before_delete` "
+                + "BEFORE DELETE ON `messages` BEGIN "
+                + "DELETE FROM `messages_fts` WHERE `docid` = OLD.`id`; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `messages_fts_after_insert` "
+                + "AFTER INSERT ON `messages` BEGIN "
+                + "INSERT INTO `messages_fts`(`docid`, `phoneNumber`, `messageText`) "
+                + "VALUES (NEW.`id`, NEW.`phoneNumber`, NEW.`messageText`); END");
+
+        // Las plantillas no se modifican, solo se crean
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `message_templates_fts` "
+                + "USING FTS4(`text`, content=`message_templates`)");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `message_templates_fts_after_insert` "
+                + "AFTER INSERT ON `message_templates` BEGIN "
+                + "INSERT INTO `message_templates_fts`(`docid`, `text`) VALUES (NEW.`id`, NEW.`text`); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `message_templates_fts_before_delete` "
+                + "BEFORE DELETE ON `message_templates` BEGIN "
+                + "DELETE FROM `message_templates_fts` WHERE `docid` = OLD.`id`; END");
+    }
+
+    /**
+     * Vuelve a indexar todas las filas existentes (tras la migración).
+     */
+    static void rebuildSearchTables(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT INTO `messages_fts`(`messages_fts`) VALUES('rebuild')");
+        db.execSQL("INSERT INTO `message_templates_fts`(`message_templates_fts`) VALUES('rebuild')");
+    }
+
+    /**
+     * Convierte el texto del usuario en una consulta MATCH de prefijos: cada palabra
+     * (letras y dígitos) se busca como prefijo y todas deben aparecer.
+     * "+34 600" -> "34* 600*". Devuelve null si no queda ninguna palabra.
+     */
+    static String toMatchQuery(String userQuery) {
+        StringBuilder match = new StringBuilder();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= userQuery.length(); i++) {
+            char c = i < userQuery.length() ? userQuery.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(c);
+            } else if (token.length() > 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(token).append('*');
+                token.setLength(0);
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    /**
+     * Primera página de resultados, del más reciente al más antiguo.
+     */
+    public List<MessageEntity> firstPage(String userQuery, int limit) {
+        return page(userQuery, false, 0, 0, limit);
+    }
+
+    /**
+     * Página siguiente a la fila (createdAt, id).
+     */
+    public List<MessageEntity> pageBefore(String userQuery, long createdAt, int id, int limit) {
+        return page(userQuery, true, createdAt, id, limit);
+    }
+
+    private List<MessageEntity> page(String userQuery, boolean hasKey, long createdAt, int id, int limit) {
+        String match = toMatchQuery(userQuery);
+        if (match == null) {
+            return new ArrayList<>();
+        }
+
+        // El + en la columna descarta su índice: así la rama filtra recorriendo el de
+        // createdAt en el orden de la página, sin ordenar todas las coincidencias. Con
+        // pocas coincidencias recorre más filas de las necesarias, pero solo el índice
+        List<Object> args = new ArrayList<>();
+        String byMessage = branch("+id IN (" + MESSAGE_MATCH + ")", hasKey);
+        args.add(match);
+        addKey(args, hasKey, createdAt, id, limit);
+        String sql = byMessage;
+
+        // Mensajes de las plantillas que coinciden, contados en index_messages_templateId
+        int templateMessages = dao.countSearch(new SimpleSQLiteQuery(
+                "SELECT COUNT(*) FROM messages WHERE templateId IN (" + TEMPLATE_MATCH + ")", new Object[]{match}));
+        if (templateMessages > 0) {
+            // Los que ya coinciden por su propio texto salen en la primera rama
+            String column = templateMessages > SPARSE_TEMPLATE_MESSAGES ? "+templateId" : "templateId";
+            String byTemplate = branch(column + " IN (" + TEMPLATE_MATCH + ") AND id NOT IN (" + MESSAGE_MATCH + ")",
+                    hasKey);
+            args.add(match);
+            args.add(match);
+            addKey(args, hasKey, createdAt, id, limit);
+            sql = "SELECT * FROM (SELECT * FROM (" + byMessage + ") UNION ALL SELECT * FROM (" + byTemplate + "))"
+                    + ORDER;
+            args.add(limit);
+        }
+
+        return dao.searchMessages(new SimpleSQLiteQuery(sql, args.toArray()));
+    }
+
+    /**
+     * Una rama de la búsqueda: los mensajes que cumplen condition, desde la clave si la
+     * hay, ya ordenados y limitados a una página.
+     */
+    private static String branch(String condition, boolean hasKey) {
+        return "SELECT * FROM messages WHERE " + condition + (hasKey ? KEY_FILTER : "") + ORDER;
+    }
+
+    private static void addKey(List<Object> args, boolean hasKey, long createdAt, int id, int limit) {
+        if (hasKey) {
+            args.add(createdAt);
+            args.add(createdAt);
+            args.add(id);
+        }
+        args.add(limit);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * Entrega un mensaje al servicio de accesibilidad mediante un broadcast interno.
+ * El broadcast solo lleva el id: el servicio lee el número y el texto de la base de datos
+ * (una búsqueda por clave primaria) al empezar el envío.
+ */
+public final class MessageSender {
+
+    private static final String TAG = "MessageSender";
+
+    private MessageSender() {
+    }
+
+    public static boolean isAccessibilityServiceEnabled(Context context) {
+        try {
+            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+            return prefs.getBoolean("accessibility_enabled", false);
+        } catch (Exception e) {
+            Log.e(TAG, "Error al verificar estado del servicio: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public static void send(Context context, int messageId) {
+        Intent intent = new Intent(MessageWorker.ACTION_SEND_MESSAGE);
+        intent.putExtra(MessageWorker.EXTRA_MESSAGE_ID, messageId);
+        intent.setPackage(context.getPackageName());
+
+        context.sendBroadcast(intent);
+        Log.d(TAG, "Broadcast enviado para el mensaje ID: " + messageId);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.mensajeautomatico;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Contadores por estado e histograma de envíos por hora mantenidos por triggers de
+ * SQLite sobre "messages": cada inserción, borrado o cambio de estado actualiza una
+ * sola fila de message_status_counts y, si el mensaje termina (enviado o error), la
+ * fila de la hora actual en message_hourly_stats.
+ */
+public final class MessageStats {
+
+    public static final long HOUR_MS = 60L * 60 * 1000;
+
+    private MessageStats() {
+    }
+
+    public static long hourBucket(long timeMillis) {
+        return timeMillis / HOUR_MS;
+    }
+
+    /**
+     * Crea los triggers. Se llama al crear la base de datos y desde la migración que
+     * introduce las tablas.
+     */
+    static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `message_stats_after_insert` "
+                + "AFTER INSERT ON `messages` BEGIN "
+                + "INSERT OR IGNORE INTO `message_status_counts`(`status`, `total`) VALUES (NEW.`status`, 0); "
+                + "UPDATE `message_status_counts` SET `total` = `total` + 1 WHERE `status` = NEW.`status`; "
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `message_stats_after_delete` "
+                + "AFTER DELETE ON `messages` BEGIN "
+                + "UPDATE `message_status_counts` SET `total` = `total` - 1 WHERE `status` = OLD.`status`; "
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `message_stats_after_status_update` "
+                + "AFTER UPDATE OF `status` ON `messages` WHEN OLD.`status` <> NEW.`status` BEGIN "
+                + "UPDATE `message_status_counts` SET `total` = `total` - 1 WHERE `status` = OLD.`status`; "
+                + "INSERT OR IGNORE INTO `message_status_counts`(`status`, `total`) VALUES (NEW.`status`, 0); "
+                + "UPDATE `message_status_counts` SET `total` = `total` + 1 WHERE `status` = NEW.`status`; "
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `message_stats_after_finish` "
+                + "AFTER UPDATE OF `status` ON `messages` "
+                + "WHEN OLD.`status` <> NEW.`status` AND NEW.`status` IN ("
+                + MessageStatus.SENT + ", " + MessageStatus.ERROR + ") BEGIN "
+                + "INSERT OR IGNORE INTO `message_hourly_stats`(`hourBucket`, `sent`, `failed`) "
+                + "VALUES (CAST(strftime('%s', 'now') AS INTEGER) / 3600, 0, 0); "
+                + "UPDATE `message_hourly_stats` SET "
+                + "`sent` = `sent` + (NEW.`status` = " + MessageStatus.SENT + "), "
+                + "`failed` = `failed` + (NEW.`status` = " + MessageStatus.ERROR + ") "
+                + "WHERE `hourBucket` = CAST(strftime('%s', 'now') AS INTEGER) / 3600; "
+                + "END");
+    }
+
+    /**
+     * Calcula los contadores a partir de las filas existentes (solo en la migración).
+     */
+    static void seedCounts(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT OR REPLACE INTO `message_status_counts`(`status`, `total`) "
+                + "SELECT `status`, COUNT(*) FROM `messages` GROUP BY `status`");
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.mensajeautomatico;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface MessageStatsDao {
+    @Query("SELECT COALESCE((SELECT total FROM message_status_counts WHERE status = :status), 0)")
+    long getStatusCount(int status);
+
+    @Query("SELECT * FROM message_status_counts")
+    LiveData<List<MessageStatusCountEntity>> observeStatusCounts();
+
+    // Como mucho una fila por hora del intervalo
+    @Query("SELECT * FROM message_hourly_stats WHERE hourBucket >= :fromBucket ORDER BY hourBucket")
+    List<HourlySendStatsEntity> getHourlyStats(long fromBucket);
+
+    @Query("SELECT * FROM message_hourly_stats WHERE hourBucket >= :fromBucket ORDER BY hourBucket")
+    LiveData<List<HourlySendStatsEntity>> observeHourlyStats(long fromBucket);
+
+    @Query("DELETE FROM message_hourly_stats WHERE hourBucket < :beforeBucket")
+    int deleteHourlyStatsBefore(long beforeBucket);
+}
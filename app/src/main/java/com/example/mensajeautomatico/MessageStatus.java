@@ -0,0 +1,38 @@
+package com.example.mensajeautomatico;
+
+/**
+ * Códigos de estado de un mensaje tal y como se guardan en la tabla "messages".
+ * Se almacenan como enteros para que el índice (status, scheduledTime) sea compacto;
+ * las etiquetas en español solo se usan para mostrarlas en la UI.
+ */
+public final class MessageStatus {
+
+    public static final int SCHEDULED = 0; // "Programado"
+    public static final int SENT = 1;      // "Enviado"
+    public static final int ERROR = 2;     // "Error"
+    public static final int SENDING = 3;   // "Enviando": entregado al servicio de accesibilidad
+    public static final int RETRY = 4;     // "Reintentando": falló y espera a nextAttemptAt (ver RetryPolicy)
+
+    private MessageStatus() {
+    }
+
+    /**
+     * Devuelve la etiqueta visible para un código de estado.
+     */
+    public static String toLabel(int status) {
+        switch (status) {
+            case SCHEDULED:
+                return "Programado";
+            case SENT:
+                return "Enviado";
+            case ERROR:
+                return "Error";
+            case SENDING:
+                return "Enviando";
+            case RETRY:
+                return "Reintentando";
+            default:
+                return "Desconocido";
+        }
+    }
+}
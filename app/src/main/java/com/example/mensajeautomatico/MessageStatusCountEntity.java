@@ -0,0 +1,20 @@
+package com.example.mensajeautomatico;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Número de mensajes en cada estado. Lo mantienen los triggers de MessageStats, así
+ * que leer los totales no recorre la tabla "messages".
+ */
+@Entity(tableName = "message_status_counts")
+public class MessageStatusCountEntity {
+    @PrimaryKey
+    public int status;
+    public long total;
+
+    public MessageStatusCountEntity(int status, long total) {
+        this.status = status;
+        this.total = total;
+    }
+}
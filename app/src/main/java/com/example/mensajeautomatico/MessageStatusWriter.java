@@ -0,0 +1,304 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Único escritor de los cambios de estado de los mensajes.
+ * Los cambios se encolan en una cola acotada que agrupa las transiciones del mismo
+ * mensaje (solo se guarda la última) y, pasada la ventana de agrupación (que se espera
+ * en el hilo principal, no en el de escrituras), una tarea en el ejecutor de escrituras
+ * en serie (AppExecutors.serialWrites) los vuelca por lotes con UPDATE dirigidos dentro de una
+ * sola transacción. submit() nunca bloquea (lo llama el hilo principal del servicio de
+ * accesibilidad): con la cola llena, el cambio se escribe solo en su propia tarea del
+ * mismo ejecutor, que respeta el orden con los volcados ya programados.
+ * En la misma transacción se crea la siguiente ocurrencia de los mensajes periódicos
+ * que terminan (ver MessageRecurrence).
+ * Los fallos llegan por submitFailure y se resuelven al volcarlos según RetryPolicy:
+ * otro intento más tarde (RETRY) o Error definitivo si se agotaron los intentos.
+ */
+public class MessageStatusWriter {
+
+    private static final String TAG = "MessageStatusWriter";
+    private static final int MAX_PENDING = 1000;
+    // Límite de variables por sentencia de SQLite (999) con margen
+    private static final int MAX_IDS_PER_UPDATE = 500;
+    // Tiempo que se espera tras el primer cambio para agrupar los siguientes
+    private static final long BATCH_WINDOW_MS = 50;
+
+    private static volatile MessageStatusWriter INSTANCE;
+
+    private final Context context;
+    private final AppDatabase db;
+    private final Executor executor;
+    // Solo cuenta la ventana de agrupación; el volcado se hace siempre en executor
+    private final Handler windowTimer = new Handler(Looper.getMainLooper());
+    private final Object lock = new Object();
+    private LinkedHashMap<Integer, Integer> pending = new LinkedHashMap<>();
+    // Motivo de los fallos pendientes (entradas de pending con estado RETRY)
+    private HashMap<Integer, String> pendingErrors = new HashMap<>();
+    private final Random random = new Random();
+    // Hay un volcado en cola o en curso que recogerá los cambios nuevos
+    private boolean drainScheduled;
+
+    private volatile long lastFlushLatencyMs;
+    private volatile int lastFlushSize;
+    private long totalFlushes;
+    private long totalFlushLatencyMs;
+
+    public static MessageStatusWriter getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (MessageStatusWriter.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new MessageStatusWriter(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private MessageStatusWriter(Context context) {
+        this.context = context;
+        this.db = AppDatabase.getDatabase(context);
+        this.executor = AppExecutors.from(context).serialWrites();
+    }
+
+    /**
+     * Encola un cambio de estado. Si ya había uno pendiente para el mismo mensaje se
+     * sustituye por este.
+     */
+    public void submit(int messageId, int status) {
+        enqueue(messageId, status, null);
+    }
+
+    /**
+     * Encola un fallo de envío. Al volcarlo se decide, con el número de intentos del
+     * mensaje, si se reintenta más tarde o queda en Error.
+     */
+    public void submitFailure(int messageId, String error) {
+        enqueue(messageId, MessageStatus.RETRY, error);
+    }
+
+    private void enqueue(int messageId, int status, String error) {
+        if (messageId == -1) {
+            return;
+        }
+        synchronized (lock) {
+            if (pending.size() >= MAX_PENDING && !pending.containsKey(messageId)) {
+                // Por si el último intento de programar el volcado fue rechazado
+                scheduleDrainLocked();
+                writeAlone(messageId, status, error);
+                return;
+            }
+            pending.put(messageId, status);
+            if (error != null) {
+                pendingErrors.put(messageId, error);
+            } else {
+                pendingErrors.remove(messageId);
+            }
+            scheduleDrainLocked();
+        }
+    }
+
+    /**
+     * Cola llena: escribe el cambio en su propia tarea del ejecutor de escrituras en serie.
+     * Va detrás de los volcados ya encolados, así que un cambio posterior del mismo
+     * mensaje (que entrará en pending cuando haya sitio) se escribe después.
+     */
+    private void writeAlone(int messageId, int status, String error) {
+        Map<Integer, Integer> batch = new HashMap<>(1);
+        batch.put(messageId, status);
+        Map<Integer, String> errors = new HashMap<>(1);
+        if (error != null) {
+            errors.put(messageId, error);
+        }
+        try {
+            executor.execute(() -> flush(batch, errors));
+        } catch (RejectedExecutionException e) {
+            // Sin sitio en ninguna cola: el mensaje se queda en Enviando y BootRecovery lo repone
+            Log.e(TAG, "Cola de estados llena; se descarta el cambio de " + messageId + ": " + e.getMessage());
+        }
+    }
+
+    private void scheduleDrainLocked() {
+        if (drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        windowTimer.postDelayed(this::startDrain, BATCH_WINDOW_MS);
+    }
+
+    /**
+     * Fin de la ventana de agrupación: pasa el volcado al ejecutor de escrituras en serie.
+     */
+    private void startDrain() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // Ejecutor saturado: el siguiente cambio volverá a intentarlo
+            Log.e(TAG, "No se pudo programar el volcado de estados: " + e.getMessage());
+            synchronized (lock) {
+                drainScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Número de mensajes con un cambio de estado pendiente de escribir.
+     */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public long getLastFlushLatencyMs() {
+        return lastFlushLatencyMs;
+    }
+
+    public int getLastFlushSize() {
+        return lastFlushSize;
+    }
+
+    public long getAverageFlushLatencyMs() {
+        synchronized (lock) {
+            return totalFlushes == 0 ? 0 : totalFlushLatencyMs / totalFlushes;
+        }
+    }
+
+    /**
+     * Recoge todos los cambios pendientes y los escribe.
+     */
+    private void drain() {
+        Map<Integer, Integer> batch;
+        Map<Integer, String> errors;
+        synchronized (lock) {
+            batch = pending;
+            errors = pendingErrors;
+            pending = new LinkedHashMap<>();
+            pendingErrors = new HashMap<>();
+            drainScheduled = false;
+        }
+        if (!batch.isEmpty()) {
+            flush(batch, errors);
+        }
+    }
+
+    private void flush(Map<Integer, Integer> batch, Map<Integer, String> errors) {
+        // Agrupar por estado para usar un UPDATE ... WHERE id IN (...) por estado
+        Map<Integer, List<Integer>> idsByStatus = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : batch.entrySet()) {
+            List<Integer> ids = idsByStatus.get(entry.getValue());
+            if (ids == null) {
+                ids = new ArrayList<>();
+                idsByStatus.put(entry.getValue(), ids);
+            }
+            ids.add(entry.getKey());
+        }
+
+        RetryPolicy policy = RetryPolicy.load(context);
+        long start = SystemClock.elapsedRealtime();
+        long nextOccurrence;
+        try {
+            nextOccurrence = db.runInTransaction(() -> {
+                long earliest = -1;
+                long now = System.currentTimeMillis();
+                List<Integer> failures = idsByStatus.remove(MessageStatus.RETRY);
+                if (failures != null) {
+                    // Los que agotan los intentos terminan: si son periódicos, crear la siguiente ocurrencia
+                    List<Integer> exhausted = new ArrayList<>();
+                    for (int id : failures) {
+                        long retryAt = recordFailure(id, errors.get(id), policy, now, exhausted);
+                        if (retryAt >= 0 && (earliest < 0 || retryAt < earliest)) {
+                            earliest = retryAt;
+                        }
+                    }
+                    if (!exhausted.isEmpty()) {
+                        long next = MessageRecurrence.materializeNext(db.messageDao(), exhausted, now);
+                        if (next >= 0 && (earliest < 0 || next < earliest)) {
+                            earliest = next;
+                        }
+                    }
+                }
+                for (Map.Entry<Integer, List<Integer>> entry : idsByStatus.entrySet()) {
+                    List<Integer> ids = entry.getValue();
+                    boolean finished = entry.getKey() == MessageStatus.SENT || entry.getKey() == MessageStatus.ERROR;
+                    for (int from = 0; from < ids.size(); from += MAX_IDS_PER_UPDATE) {
+                        List<Integer> slice = ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_UPDATE));
+                        db.messageDao().updateStatusBulk(slice, entry.getKey());
+                        if (finished) {
+                            long next = MessageRecurrence.materializeNext(db.messageDao(), slice, now);
+                            if (next >= 0 && (earliest < 0 || next < earliest)) {
+                                earliest = next;
+                            }
+                        }
+                    }
+                }
+                return earliest;
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Error al escribir " + batch.size() + " cambios de estado: " + e.getMessage());
+            // Devolver a la cola los cambios que no hayan sido sustituidos por otros más nuevos
+            synchronized (lock) {
+                for (Map.Entry<Integer, Integer> entry : batch.entrySet()) {
+                    if (!pending.containsKey(entry.getKey())) {
+                        pending.put(entry.getKey(), entry.getValue());
+                        if (errors.containsKey(entry.getKey())) {
+                            pendingErrors.put(entry.getKey(), errors.get(entry.getKey()));
+                        }
+                    }
+                }
+                scheduleDrainLocked();
+            }
+            return;
+        }
+        long latency = SystemClock.elapsedRealtime() - start;
+        if (nextOccurrence >= 0) {
+            // Siguiente ocurrencia o reintento: adelantar el despachador si hace falta
+            MessageDispatcher.onMessagesScheduled(context, nextOccurrence);
+        }
+
+        lastFlushLatencyMs = latency;
+        lastFlushSize = batch.size();
+        synchronized (lock) {
+            totalFlushes++;
+            totalFlushLatencyMs += latency;
+        }
+        Log.d(TAG, "Escritos " + batch.size() + " cambios de estado en " + latency + " ms.");
+    }
+
+    /**
+     * Aplica la política de reintentos a un fallo. Devuelve el momento del siguiente
+     * intento, o -1 si el mensaje queda en Error (y entonces se añade a exhausted).
+     */
+    private long recordFailure(int messageId, String error, RetryPolicy policy, long now, List<Integer> exhausted) {
+        MessageEntity message = db.messageDao().getMessageById(messageId);
+        if (message == null) {
+            return -1;
+        }
+        int attempts = message.attemptCount + 1;
+        if (policy.canRetry(attempts)) {
+            long retryAt = now + policy.delayFor(attempts, random);
+            db.messageDao().scheduleRetry(messageId, error, retryAt);
+            Log.d(TAG, "Mensaje " + messageId + " falló (" + error + "), intento " + attempts + " de "
+                    + policy.maxAttempts + "; se reintenta en " + (retryAt - now) + " ms.");
+            return retryAt;
+        }
+        db.messageDao().markFailed(messageId, error);
+        exhausted.add(messageId);
+        Log.d(TAG, "Mensaje " + messageId + " falló tras " + attempts + " intentos: " + error);
+        return -1;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.mensajeautomatico;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface MessageTemplateDao {
+    @Insert
+    long insert(MessageTemplateEntity template);
+
+    // Usa el índice index_message_templates_hash
+    @Query("SELECT * FROM message_templates WHERE hash = :hash")
+    List<MessageTemplateEntity> getTemplatesByHash(long hash);
+
+    @Query("SELECT text FROM message_templates WHERE id = :templateId")
+    String getTemplateText(int templateId);
+}
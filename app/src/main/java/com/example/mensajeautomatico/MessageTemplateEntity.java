@@ -0,0 +1,29 @@
+package com.example.mensajeautomatico;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Texto de mensaje compartido por muchos destinatarios. Los mensajes lo referencian
+ * con templateId en lugar de guardar una copia del texto en cada fila.
+ * El texto puede llevar variables con la forma {nombre}.
+ */
+@Entity(tableName = "message_templates",
+        indices = {@Index(value = {"hash"})})
+public class MessageTemplateEntity {
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+
+    @NonNull
+    public String text;
+    public long hash; // Para buscar rápidamente un texto ya guardado
+    public long createdAt;
+
+    public MessageTemplateEntity(@NonNull String text, long hash) {
+        this.text = text;
+        this.hash = hash;
+        this.createdAt = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.LruCache;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Guarda y resuelve las plantillas de texto de los mensajes.
+ * Mantiene en memoria las plantillas más usadas, de modo que resolver el texto de
+ * miles de mensajes de una misma campaña solo lee la plantilla de la base de datos
+ * una vez.
+ * Los métodos que acceden a la base de datos deben llamarse fuera del hilo principal.
+ */
+public class MessageTemplates {
+
+    private static final String TAG = "MessageTemplates";
+    // Tamaño de la caché medido en caracteres de texto
+    private static final int CACHE_SIZE_CHARS = 256 * 1024;
+
+    private static volatile MessageTemplates INSTANCE;
+
+    private final AppDatabase db;
+    private final LruCache<Integer, String> cache = new LruCache<Integer, String>(CACHE_SIZE_CHARS) {
+        @Override
+        protected int sizeOf(Integer key, String value) {
+            return Math.max(1, value.length());
+        }
+    };
+
+    public static MessageTemplates getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (MessageTemplates.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new MessageTemplates(AppDatabase.getDatabase(context));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    MessageTemplates(AppDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Devuelve el id de la plantilla con este texto, creándola si no existe.
+     * Puede llamarse dentro de una transacción (la del lote que usa la plantilla); en
+     * ese caso no se toca la caché, porque si la transacción se deshace el id de una
+     * plantilla nueva podría acabar siendo de otro texto.
+     */
+    public int intern(String text) {
+        long hash = hashOf(text);
+        MessageTemplateDao dao = db.messageTemplateDao();
+        for (MessageTemplateEntity existing : dao.getTemplatesByHash(hash)) {
+            if (existing.text.equals(text)) {
+                if (!db.inTransaction()) {
+                    cache.put(existing.id, existing.text);
+                }
+                return existing.id;
+            }
+        }
+        int id = (int) dao.insert(new MessageTemplateEntity(text, hash));
+        if (!db.inTransaction()) {
+            cache.put(id, text);
+        }
+        return id;
+    }
+
+    /**
+     * Devuelve el texto final del mensaje: el propio texto si no usa plantilla, o la
+     * plantilla con sus variables sustituidas.
+     */
+    public String resolveText(MessageEntity message) {
+        if (message.templateId == null) {
+            return message.messageText;
+        }
+        String template = getTemplateText(message.templateId);
+        if (template == null) {
+            Log.e(TAG, "Plantilla no encontrada: " + message.templateId);
+            return null;
+        }
+        return applyVariables(template, message.templateVars);
+    }
+
+    public String getTemplateText(int templateId) {
+        String text = cache.get(templateId);
+        if (text == null) {
+            text = db.messageTemplateDao().getTemplateText(templateId);
+            if (text != null) {
+                cache.put(templateId, text);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Codifica los valores de las variables de un destinatario para guardarlos en la fila.
+     */
+    public static String encodeVariables(Map<String, String> variables) {
+        if (variables == null || variables.isEmpty()) {
+            return null;
+        }
+        return new JSONObject(variables).toString();
+    }
+
+    /**
+     * Sustituye cada {clave} de la plantilla por su valor.
+     */
+    static String applyVariables(String template, String encodedVariables) {
+        if (encodedVariables == null || encodedVariables.isEmpty()) {
+            return template;
+        }
+        try {
+            JSONObject variables = new JSONObject(encodedVariables);
+            String result = template;
+            Iterator<String> keys = variables.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                result = result.replace("{" + key + "}", variables.optString(key));
+            }
+            return result;
+        } catch (JSONException e) {
+            Log.e(TAG, "Variables de plantilla no válidas: " + e.getMessage());
+            return template;
+        }
+    }
+
+    static long hashOf(String text) {
+        // FNV-1a de 64 bits: barato y con muchas menos colisiones que String.hashCode()
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -10,50 +10,62 @@ import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
 import java.net.URLEncoder;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
 import androidx.annotation.NonNull;
 import android.annotation.SuppressLint;
 
 /**
  * Servicio de Accesibilidad para automatizar el envío de mensajes en WhatsApp.
- * Recibe datos de un MessageWorker y simula interacciones de usuario.
+ * Recibe el id del mensaje del despachador, lee el número y el texto de la base de datos
+ * y simula interacciones de usuario. Los mensajes se envían de uno en uno, en orden de
+ * llegada, con la máquina de estados de SendStateMachine.
  */
-public class MiServicioDeAccesibilidad extends AccessibilityService {
+public class MiServicioDeAccesibilidad extends AccessibilityService implements SendStateMachine.Driver {
 
     private static final String TAG = "MiServicioAccesibilidad";
+    // Espera tras el último envío antes de salir de WhatsApp, si no llega otro mensaje
+    private static final long LEAVE_WHATSAPP_DELAY_MS = 2000;
+
+    private Handler handler = new Handler(Looper.getMainLooper());
+    // Cola de envíos: solo se usa desde el hilo principal
+    private final SendStateMachine sendQueue = new SendStateMachine(this);
+    // Número y texto del envío en curso, leídos de la base de datos al abrirlo
+    private int loadedId = -1;
     private String phoneNumber;
     private String messageText;
-    private int messageId;
-    private AtomicBoolean isMessageScheduled = new AtomicBoolean(false);
-    private AtomicBoolean isWhatsAppOpened = new AtomicBoolean(false);
-    private Handler handler = new Handler(Looper.getMainLooper());
 
-    // Constantes para el Broadcast del MessageWorker
+    // Constantes para el Broadcast del despachador
     public static final String ACTION_SEND_MESSAGE = "com.example.mensajeautomatico.SEND_MESSAGE";
-    public static final String EXTRA_PHONE_NUMBER = "phone_number";
-    public static final String EXTRA_MESSAGE_TEXT = "message_text";
     public static final String EXTRA_MESSAGE_ID = "message_id";
 
-    // Un BroadcastReceiver para recibir la señal del MessageWorker
+    // Un BroadcastReceiver para recibir los mensajes del despachador
     private final BroadcastReceiver messageReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
             if (ACTION_SEND_MESSAGE.equals(intent.getAction())) {
-                phoneNumber = intent.getStringExtra(EXTRA_PHONE_NUMBER);
-                messageText = intent.getStringExtra(EXTRA_MESSAGE_TEXT);
-                messageId = intent.getIntExtra(EXTRA_MESSAGE_ID, -1);
-                isMessageScheduled.set(true);
-                Log.d(TAG, "Mensaje recibido del worker. Preparando envío a: " + phoneNumber);
-                openWhatsAppAndSendMessage();
+                int messageId = intent.getIntExtra(EXTRA_MESSAGE_ID, -1);
+                SendTracer.getInstance(MiServicioDeAccesibilidad.this)
+                        .record(messageId, SendTracer.STAGE_SERVICE_RECEIVED);
+                Log.d(TAG, "Mensaje " + messageId + " recibido del despachador. En cola: " + sendQueue.getQueueSize());
+                sendQueue.enqueue(messageId);
             }
         }
     };
 
+    // Una actualización de WhatsApp invalida las rutas aprendidas por SelectorCache
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            Log.d(TAG, "Paquete actualizado: " + (data != null ? data.getSchemeSpecificPart() : null));
+            SelectorCache.getInstance(MiServicioDeAccesibilidad.this).clearVersions();
+        }
+    };
+
     @SuppressLint("UnspecifiedRegisterReceiverFlag")
     @Override
     protected void onServiceConnected() {
@@ -68,33 +80,89 @@ public class MiServicioDeAccesibilidad extends AccessibilityService {
             registerReceiver(messageReceiver, filter);
         }
 
+        // Los avisos de paquetes los manda el sistema: el receptor tiene que estar exportado
+        IntentFilter packageFilter = new IntentFilter(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addDataScheme("package");
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            registerReceiver(packageReceiver, packageFilter, Context.RECEIVER_EXPORTED);
+        } else {
+            registerReceiver(packageReceiver, packageFilter);
+        }
+        SelectorCache.getInstance(this).clearVersions();
+
         sendAccessibilityStatusBroadcast(true);
+
+        // Leer los perfiles de selectores antes del primer envío, fuera del hilo principal
+        AppExecutors.from(this).diskIO().execute(() -> SelectorProfiles.getInstance(getApplicationContext()));
+
+        // Enviar lo que quedó pendiente mientras el servicio estaba desactivado
+        AppExecutors.from(this).diskIO().execute(() -> MessageDispatcher.onAccessibilityAvailable(getApplicationContext()));
     }
 
+    /**
+     * La apertura del chat llega como cambio de estado de ventana; después, cada cambio de
+     * contenido hace que la cola compruebe al momento si el campo de texto o el botón de
+     * enviar ya están listos.
+     */
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        if (!isMessageScheduled.get() || !isWhatsAppOpened.get()) {
+        int state = sendQueue.getState();
+        if (state < SendStateMachine.OPENING || state > SendStateMachine.CONFIRMING) {
             return;
         }
 
         String packageName = event.getPackageName() != null ? event.getPackageName().toString() : "";
-        if ("com.whatsapp".equals(packageName) || "com.whatsapp.w4b".equals(packageName)) {
-            Log.d(TAG, "Evento de accesibilidad en WhatsApp detectado: " + event.getEventType());
-
-            // Esperar a que la ventana esté estable y luego procesar el mensaje
-            if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
-                handler.postDelayed(() -> {
-                    performActionForMessage();
-                }, 2000); // Esperar 2 segundos para que WhatsApp cargue completamente
+        if (!"com.whatsapp".equals(packageName) && !"com.whatsapp.w4b".equals(packageName)) {
+            return;
+        }
+        int eventType = event.getEventType();
+        if (state == SendStateMachine.OPENING) {
+            if (eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED && sendQueue.onWindowChanged()) {
+                SendTracer.getInstance(this).record(sendQueue.getCurrentId(), SendTracer.STAGE_WINDOW_CHANGED);
             }
+        } else if (eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+                || eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+            sendQueue.onContentChanged();
         }
     }
 
-    private void openWhatsAppAndSendMessage() {
+    /**
+     * Lee el mensaje (con su texto final) fuera del hilo principal y abre su chat desde él.
+     */
+    @Override
+    public void open(int messageId) {
+        Context appContext = getApplicationContext();
+        AppExecutors.from(this).diskIO().execute(() -> {
+            String phone = null;
+            String text = null;
+            try {
+                MessageEntity message = AppDatabase.getDatabase(appContext).messageDao().getMessageById(messageId);
+                if (message != null) {
+                    phone = message.phoneNumber;
+                    text = MessageTemplates.getInstance(appContext).resolveText(message);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error al leer el mensaje " + messageId + ": " + e.getMessage());
+            }
+            final String loadedPhone = phone;
+            final String loadedText = text;
+            handler.post(() -> {
+                if (sendQueue.getCurrentId() != messageId) {
+                    return;
+                }
+                loadedId = messageId;
+                phoneNumber = loadedPhone;
+                messageText = loadedText;
+                openWhatsApp(messageId);
+            });
+        });
+    }
+
+    private void openWhatsApp(int messageId) {
         if (phoneNumber == null || messageText == null) {
             Log.e(TAG, "Número de teléfono o mensaje nulos.");
-            updateMessageStatusInDatabase(false);
-            isMessageScheduled.set(false);
+            sendQueue.fail(messageId, null);
             return;
         }
         try {
@@ -105,148 +173,120 @@ public class MiServicioDeAccesibilidad extends AccessibilityService {
             whatsappIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
             startActivity(whatsappIntent);
             Log.d(TAG, "Abriendo WhatsApp con el chat de: " + phoneNumber);
-
-            // Marcar que WhatsApp se está abriendo
-            isWhatsAppOpened.set(true);
-
-            // Configurar un timeout por si WhatsApp no se abre correctamente
-            handler.postDelayed(() -> {
-                if (isMessageScheduled.get()) {
-                    Log.e(TAG, "Timeout: WhatsApp no se abrió correctamente.");
-                    updateMessageStatusInDatabase(false);
-                    isMessageScheduled.set(false);
-                    isWhatsAppOpened.set(false);
-                }
-            }, 10000); // 10 segundos de timeout
-
         } catch (Exception e) {
             Log.e(TAG, "Error al abrir WhatsApp: " + e.getMessage());
-            updateMessageStatusInDatabase(false);
-            isMessageScheduled.set(false);
-            isWhatsAppOpened.set(false);
+            sendQueue.fail(messageId, "Error al abrir WhatsApp: " + e.getMessage());
         }
     }
 
     /**
-     * Esta función busca los nodos de la interfaz para escribir y enviar el mensaje.
+     * Busca el campo de texto del chat y escribe el mensaje.
      */
-    private void performActionForMessage() {
-        if (!isMessageScheduled.get()) {
-            return;
-        }
-
-        AccessibilityNodeInfo rootNode = getRootInActiveWindow();
+    @Override
+    public boolean compose(int messageId) {
+        AccessibilityNodeInfo rootNode = AccessibilityNodes.get().root(this);
         if (rootNode == null) {
-            Log.d(TAG, "Nodo raíz nulo. Reintentando...");
-            handler.postDelayed(() -> performActionForMessage(), 1000);
-            return;
+            Log.d(TAG, "Nodo raíz nulo. Esperando a la ventana...");
+            return false;
         }
+        AccessibilityNodeInfo messageNode = findEntryNode(rootNode);
+        try {
+            if (messageNode == null || !messageNode.isEnabled()) {
+                Log.d(TAG, "Campo de texto aún no disponible.");
+                return false;
+            }
 
-        // 1. Encontrar el campo de texto del mensaje.
-        AccessibilityNodeInfo messageNode = findNodeByResourceId(rootNode, "com.whatsapp:id/entry");
-        if (messageNode == null) {
-            messageNode = findNodeByClassName(rootNode, "android.widget.EditText");
-            Log.d(TAG, "Buscando campo de texto por clase...");
+            Log.d(TAG, "Campo de texto encontrado. Escribiendo mensaje...");
+            SendTracer tracer = SendTracer.getInstance(this);
+            tracer.record(messageId, SendTracer.STAGE_ENTRY_FOUND);
+            Bundle arguments = new Bundle();
+            arguments.putCharSequence(AccessibilityNodeInfo.ACTION_ARGUMENT_SET_TEXT_CHARSEQUENCE, messageText);
+            messageNode.performAction(AccessibilityNodeInfo.ACTION_SET_TEXT, arguments);
+            tracer.record(messageId, SendTracer.STAGE_TEXT_SET);
+            return true;
+        } finally {
+            AccessibilityNodes.get().release(rootNode, messageNode);
         }
+    }
 
-        if (messageNode == null) {
-            Log.d(TAG, "Campo de texto no encontrado. Reintentando...");
-            handler.postDelayed(() -> performActionForMessage(), 1000);
-            return;
+    /**
+     * Busca el botón de enviar y lo pulsa.
+     */
+    @Override
+    public boolean clickSend(int messageId) {
+        AccessibilityNodeInfo rootNode = AccessibilityNodes.get().root(this);
+        if (rootNode == null) {
+            return false;
         }
-
-        Log.d(TAG, "Campo de texto encontrado. Escribiendo mensaje...");
-        Bundle arguments = new Bundle();
-        arguments.putCharSequence(AccessibilityNodeInfo.ACTION_ARGUMENT_SET_TEXT_CHARSEQUENCE, messageText);
-        messageNode.performAction(AccessibilityNodeInfo.ACTION_SET_TEXT, arguments);
-
-        // Pequeña pausa después de escribir el texto
-        handler.postDelayed(() -> {
-            // 2. Encontrar y hacer clic en el botón de enviar.
-            AccessibilityNodeInfo sendButton = findNodeByResourceId(rootNode, "com.whatsapp:id/send");
-            if (sendButton == null) {
-                sendButton = findNodeByContentDescription(rootNode, "Enviar");
-                Log.d(TAG, "Buscando botón por descripción...");
-            }
-            if (sendButton == null) {
-                sendButton = findNodeByContentDescription(rootNode, "Send");
-                Log.d(TAG, "Buscando botón por descripción en inglés...");
-            }
-
-            if (sendButton != null && sendButton.isClickable()) {
-                Log.d(TAG, "Botón de enviar encontrado. Haciendo clic...");
-                sendButton.performAction(AccessibilityNodeInfo.ACTION_CLICK);
-
-                // Éxito - mensaje enviado
-                isMessageScheduled.set(false);
-                isWhatsAppOpened.set(false);
-                updateMessageStatusInDatabase(true);
-
-                // Volver atrás después de enviar
-                handler.postDelayed(() -> performGlobalAction(GLOBAL_ACTION_BACK), 2000);
-            } else {
-                Log.e(TAG, "No se encontró el botón de enviar. Reintentando...");
-                handler.postDelayed(() -> performActionForMessage(), 1000);
+        AccessibilityNodeInfo sendButton = SelectorCache.getInstance(this).find(rootNode, SelectorProfiles.TARGET_SEND)[0];
+        try {
+            if (sendButton == null || !sendButton.isClickable() || !sendButton.isEnabled()) {
+                Log.d(TAG, "Botón de enviar aún no disponible.");
+                return false;
             }
-        }, 1000); // Esperar 1 segundo después de escribir el texto
+            Log.d(TAG, "Botón de enviar encontrado. Haciendo clic...");
+            sendButton.performAction(AccessibilityNodeInfo.ACTION_CLICK);
+            SendTracer.getInstance(this).record(messageId, SendTracer.STAGE_SEND_CLICKED);
+            return true;
+        } finally {
+            AccessibilityNodes.get().release(rootNode, sendButton);
+        }
     }
 
-    private AccessibilityNodeInfo findNodeByClassName(AccessibilityNodeInfo rootNode, String className) {
-        if (rootNode == null) return null;
-        return findNodeByViewTraversal(rootNode, node -> {
-            return node.getClassName() != null && node.getClassName().toString().equals(className);
-        });
+    /**
+     * El mensaje ha salido cuando el campo de texto ya no contiene su texto.
+     */
+    @Override
+    public boolean confirmSent(int messageId) {
+        AccessibilityNodeInfo rootNode = AccessibilityNodes.get().root(this);
+        if (rootNode == null) {
+            return false;
+        }
+        AccessibilityNodeInfo messageNode = findEntryNode(rootNode);
+        try {
+            if (messageNode == null || messageNode.getText() == null) {
+                return true;
+            }
+            return !messageNode.getText().toString().trim().equals(messageText.trim());
+        } finally {
+            AccessibilityNodes.get().release(rootNode, messageNode);
+        }
     }
 
-    private AccessibilityNodeInfo findNodeByResourceId(AccessibilityNodeInfo rootNode, String resourceId) {
-        if (rootNode == null) return null;
-        List<AccessibilityNodeInfo> nodes = rootNode.findAccessibilityNodeInfosByViewId(resourceId);
-        if (nodes != null && !nodes.isEmpty()) {
-            return nodes.get(0);
+    @Override
+    public void finish(int messageId, boolean success, String error) {
+        if (loadedId == messageId) {
+            loadedId = -1;
+            phoneNumber = null;
+            messageText = null;
         }
-        return null;
+        updateMessageStatusInDatabase(messageId, success, error);
     }
 
-    private AccessibilityNodeInfo findNodeByContentDescription(AccessibilityNodeInfo rootNode, String description) {
-        if (rootNode == null) return null;
-        List<AccessibilityNodeInfo> nodes = rootNode.findAccessibilityNodeInfosByText(description);
-        if (nodes != null && !nodes.isEmpty()) {
-            for (AccessibilityNodeInfo node : nodes) {
-                if (node.getContentDescription() != null &&
-                        node.getContentDescription().toString().equalsIgnoreCase(description)) {
-                    return node;
-                }
+    /**
+     * Sin más mensajes en cola: volver atrás, salvo que haya llegado otro mientras tanto.
+     */
+    @Override
+    public void onIdle() {
+        handler.postDelayed(() -> {
+            if (sendQueue.getState() == SendStateMachine.IDLE) {
+                performGlobalAction(GLOBAL_ACTION_BACK);
             }
-        }
-        return findNodeByViewTraversal(rootNode, node -> {
-            return node.getContentDescription() != null &&
-                    node.getContentDescription().toString().equalsIgnoreCase(description);
-        });
+        }, LEAVE_WHATSAPP_DELAY_MS);
     }
 
-    @FunctionalInterface
-    private interface NodeMatcher {
-        boolean matches(AccessibilityNodeInfo node);
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        handler.postDelayed(task, delayMs);
     }
 
-    private AccessibilityNodeInfo findNodeByViewTraversal(AccessibilityNodeInfo rootNode, NodeMatcher matcher) {
-        if (rootNode == null) {
-            return null;
-        }
-
-        if (matcher.matches(rootNode)) {
-            return rootNode;
-        }
+    @Override
+    public long now() {
+        return SystemClock.elapsedRealtime();
+    }
 
-        for (int i = 0; i < rootNode.getChildCount(); i++) {
-            AccessibilityNodeInfo child = rootNode.getChild(i);
-            if (child == null) continue;
-            AccessibilityNodeInfo found = findNodeByViewTraversal(child, matcher);
-            if (found != null) {
-                return found;
-            }
-        }
-        return null;
+    private AccessibilityNodeInfo findEntryNode(AccessibilityNodeInfo rootNode) {
+        return SelectorCache.getInstance(this).find(rootNode, SelectorProfiles.TARGET_ENTRY)[0];
     }
 
     @Override
@@ -266,6 +306,7 @@ public class MiServicioDeAccesibilidad extends AccessibilityService {
         if (messageReceiver != null) {
             try {
                 unregisterReceiver(messageReceiver);
+                unregisterReceiver(packageReceiver);
             } catch (Exception e) {
                 Log.e(TAG, "Error al desregistrar el BroadcastReceiver: " + e.getMessage());
             }
@@ -285,25 +326,23 @@ public class MiServicioDeAccesibilidad extends AccessibilityService {
         }
     }
 
-    private void updateMessageStatusInDatabase(boolean success) {
-        new Thread(() -> {
-            try {
-                AppDatabase db = AppDatabase.getDatabase(this);
-                if (messageId != -1) {
-                    MessageEntity message = db.messageDao().getMessageById(messageId);
-                    if (message != null) {
-                        message.status = success ? "Enviado" : "Error";
-                        db.messageDao().update(message);
-                        Log.d(TAG, "Estado del mensaje actualizado a: " + message.status);
-                    } else {
-                        Log.d(TAG, "No se encontró el mensaje con ID: " + messageId);
-                    }
-                } else {
-                    Log.d(TAG, "ID de mensaje no válido, no se puede actualizar la base de datos");
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error al actualizar base de datos: " + e.getMessage());
-            }
-        }).start();
+    /**
+     * Encola el resultado del envío. Un fallo con motivo (error no nulo) es transitorio y
+     * pasa por RetryPolicy; sin motivo, el mensaje queda en Error directamente.
+     */
+    private void updateMessageStatusInDatabase(int messageId, boolean success, String error) {
+        if (messageId == -1) {
+            Log.d(TAG, "ID de mensaje no válido, no se puede actualizar la base de datos");
+            return;
+        }
+        MessageStatusWriter writer = MessageStatusWriter.getInstance(this);
+        if (!success && error != null) {
+            writer.submitFailure(messageId, error);
+            Log.d(TAG, "Fallo del mensaje " + messageId + " encolado: " + error);
+            return;
+        }
+        int status = success ? MessageStatus.SENT : MessageStatus.ERROR;
+        writer.submit(messageId, status);
+        Log.d(TAG, "Estado del mensaje " + messageId + " encolado como: " + MessageStatus.toLabel(status));
     }
 }
\ No newline at end of file
@@ -3,10 +3,20 @@ package com.example.mensajeautomatico;
 import android.app.Application;
 
 public class MyApplication extends Application {
+
+    // Ejecutores compartidos por toda la aplicación (ver AppExecutors)
+    private final AppExecutors executors = new AppExecutors();
+
     @Override
     public void onCreate() {
         super.onCreate();
         // Inicializar la base de datos
         AppDatabase.getDatabase(this);
+        // Archivado periódico del historial antiguo
+        MaintenanceWorker.schedule(this);
+    }
+
+    public AppExecutors getExecutors() {
+        return executors;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,289 @@
+package com.example.mensajeautomatico;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recorrido en profundidad, iterativo y acotado, de un árbol de nodos (el de
+ * accesibilidad de WhatsApp en la app, ver AccessibilityNodes).
+ * - Sin recursión: una pila de marcos reutilizada entre búsquedas, sin reservar memoria
+ *   por nodo, así que un árbol profundo no desborda la pila del hilo.
+ * - Solo mantiene vivos los nodos del camino actual y recicla cada nodo que obtiene,
+ *   salvo los que el visitante se queda (que pasan a ser del llamante) y la raíz (que es
+ *   del llamante).
+ * - Se detiene al llegar a maxDepth niveles bajo la raíz o tras visitar maxNodes nodos.
+ * No es segura entre hilos: cada hilo debe usar su propia instancia.
+ */
+public final class NodeTraversal<N> {
+
+    /**
+     * Acceso a los nodos del árbol.
+     */
+    public interface Tree<N> {
+        int childCount(N node);
+
+        /**
+         * Obtiene el hijo index de node, o null si ya no existe.
+         */
+        N child(N node, int index);
+
+        void recycle(N node);
+    }
+
+    public interface Matcher<N> {
+        boolean matches(N node);
+    }
+
+    /**
+     * Rango de node para el objetivo target: 0 es la estrategia preferida, -1 si no
+     * cumple ninguna.
+     */
+    public interface Ranker<N> {
+        int rank(int target, N node);
+    }
+
+    // Resultado de Visitor.visit, combinable con |
+    public static final int CONTINUE = 0;
+    // El llamante se queda el nodo y lo recicla él
+    public static final int KEEP = 1;
+    // Terminar el recorrido
+    public static final int STOP = 2;
+
+    /**
+     * Recibe cada nodo en preorden; depth es 0 para la raíz.
+     */
+    public interface Visitor<N> {
+        int visit(N node, int depth);
+    }
+
+    private final Tree<N> tree;
+    private final int maxDepth;
+    private final int maxNodes;
+    // Camino actual: nodo de cada nivel, siguiente hijo por visitar y si es del llamante
+    private final Object[] stack;
+    private final int[] nextChild;
+    private final boolean[] kept;
+    // Nivel del padre del nodo que se está visitando (-1 para la raíz)
+    private int visitLevel;
+
+    private int lastVisited;
+    private boolean lastTruncated;
+    private int lastPathLength;
+
+    // Visitante reutilizado por find
+    private Matcher<N> findMatcher;
+    private int[] findPath;
+    private N findResult;
+    private final Visitor<N> findVisitor = (node, depth) -> {
+        if (!findMatcher.matches(node)) {
+            return CONTINUE;
+        }
+        findResult = node;
+        lastPathLength = findPath != null ? currentPath(findPath) : depth;
+        return KEEP | STOP;
+    };
+
+    public NodeTraversal(Tree<N> tree, int maxDepth, int maxNodes) {
+        this.tree = tree;
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.stack = new Object[maxDepth + 1];
+        this.nextChild = new int[maxDepth + 1];
+        this.kept = new boolean[maxDepth + 1];
+    }
+
+    /**
+     * Primer nodo (en preorden) que cumple matcher, o null.
+     */
+    public N find(N root, Matcher<N> matcher) {
+        return find(root, matcher, null);
+    }
+
+    /**
+     * Como find, y además escribe en path los índices de hijos desde la raíz hasta el
+     * nodo encontrado (su longitud queda en getLastPathLength). path debe tener al menos
+     * maxDepth posiciones.
+     */
+    public N find(N root, Matcher<N> matcher, int[] path) {
+        findMatcher = matcher;
+        findPath = path;
+        findResult = null;
+        lastPathLength = 0;
+        try {
+            walk(root, findVisitor);
+            return findResult;
+        } finally {
+            findMatcher = null;
+            findPath = null;
+            findResult = null;
+        }
+    }
+
+    /**
+     * Un único recorrido para results.length objetivos: cada nodo se compara con todos y
+     * se queda, por objetivo, el de menor rango. Al terminar, results[k] es ese nodo (o
+     * null), ranks[k] su rango (-1 si no hay), y paths[k] (de al menos maxDepth
+     * posiciones) y pathLengths[k] su ruta desde la raíz. Termina antes si todos tienen
+     * rango 0.
+     * Los nodos de results son del llamante y pueden repetirse o ser la raíz: se sueltan
+     * con release. Los que se quedaron y luego mejoró otro ya están reciclados.
+     */
+    public void findBest(N root, Ranker<N> ranker, N[] results, int[] ranks, int[][] paths, int[] pathLengths) {
+        int count = results.length;
+        for (int k = 0; k < count; k++) {
+            results[k] = null;
+            ranks[k] = -1;
+            pathLengths[k] = 0;
+        }
+        List<N> displaced = new ArrayList<>();
+        walk(root, (node, depth) -> {
+            boolean keep = false;
+            boolean allPreferred = true;
+            for (int k = 0; k < count; k++) {
+                int rank = ranker.rank(k, node);
+                if (rank >= 0 && (ranks[k] < 0 || rank < ranks[k])) {
+                    if (results[k] != null) {
+                        displaced.add(results[k]);
+                    }
+                    results[k] = node;
+                    ranks[k] = rank;
+                    pathLengths[k] = currentPath(paths[k]);
+                    keep = true;
+                }
+                allPreferred &= ranks[k] == 0;
+            }
+            return (keep ? KEEP : CONTINUE) | (allPreferred ? STOP : CONTINUE);
+        });
+
+        // Soltar los nodos que se quedaron y luego mejoró otro, salvo si siguen en uso
+        Object[] dropped = displaced.toArray();
+        for (int i = 0; i < dropped.length; i++) {
+            Object node = dropped[i];
+            if (node != root && indexOfSame(results, node, count) < 0 && indexOfSame(dropped, node, i) < 0) {
+                tree.recycle(displaced.get(i));
+            }
+        }
+    }
+
+    /**
+     * Recicla la raíz y los nodos encontrados en ella, cada objeto una sola vez (un nodo
+     * puede ser la propia raíz o aparecer para varios objetivos).
+     */
+    public static <N> void release(Tree<N> tree, N root, List<N> found) {
+        Object[] nodes = found.toArray();
+        for (int i = 0; i < nodes.length; i++) {
+            N node = found.get(i);
+            if (node != null && node != root && indexOfSame(nodes, node, i) < 0) {
+                tree.recycle(node);
+            }
+        }
+        if (root != null) {
+            tree.recycle(root);
+        }
+    }
+
+    /**
+     * Posición del mismo objeto que node entre las primeras end de items, o -1.
+     */
+    private static int indexOfSame(Object[] items, Object node, int end) {
+        for (int i = 0; i < end; i++) {
+            if (items[i] == node) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Recorre el árbol en preorden pasando cada nodo a visitor, hasta que devuelva STOP
+     * o se agoten los límites.
+     */
+    @SuppressWarnings("unchecked")
+    public void walk(N root, Visitor<N> visitor) {
+        lastVisited = 0;
+        lastTruncated = false;
+        if (root == null) {
+            return;
+        }
+        lastVisited++;
+        visitLevel = -1;
+        if ((visitor.visit(root, 0) & STOP) != 0) {
+            return;
+        }
+
+        int top = 0;
+        stack[0] = root;
+        nextChild[0] = 0;
+        kept[0] = true;
+        while (top >= 0) {
+            N parent = (N) stack[top];
+            if (top == maxDepth || nextChild[top] >= tree.childCount(parent)) {
+                pop(top--);
+                continue;
+            }
+            if (lastVisited >= maxNodes) {
+                lastTruncated = true;
+                break;
+            }
+            N child = tree.child(parent, nextChild[top]++);
+            if (child == null) {
+                continue;
+            }
+            lastVisited++;
+            visitLevel = top;
+            int result = visitor.visit(child, top + 1);
+            boolean keep = (result & KEEP) != 0;
+            if ((result & STOP) != 0) {
+                if (!keep) {
+                    tree.recycle(child);
+                }
+                break;
+            }
+            top++;
+            stack[top] = child;
+            nextChild[top] = 0;
+            kept[top] = keep;
+        }
+        // Soltar el camino que quede, sin la raíz ni los nodos del llamante
+        while (top >= 0) {
+            pop(top--);
+        }
+    }
+
+    /**
+     * Dentro de Visitor.visit: escribe en out los índices de hijos desde la raíz hasta el
+     * nodo visitado y devuelve cuántos son.
+     */
+    public int currentPath(int[] out) {
+        for (int level = 0; level <= visitLevel; level++) {
+            out[level] = nextChild[level] - 1;
+        }
+        return visitLevel + 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void pop(int level) {
+        if (!kept[level]) {
+            tree.recycle((N) stack[level]);
+        }
+        stack[level] = null;
+    }
+
+    /**
+     * Nodos visitados en el último recorrido.
+     */
+    public int getLastVisited() {
+        return lastVisited;
+    }
+
+    /**
+     * Si el último recorrido se cortó por el límite de nodos.
+     */
+    public boolean wasLastTruncated() {
+        return lastTruncated;
+    }
+
+    public int getLastPathLength() {
+        return lastPathLength;
+    }
+}
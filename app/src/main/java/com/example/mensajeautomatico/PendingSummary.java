@@ -0,0 +1,11 @@
+package com.example.mensajeautomatico;
+
+/**
+ * Resultado de MessageDao.getPendingSummary: mensajes programados y cuántos de ellos
+ * ya han vencido.
+ */
+public class PendingSummary {
+    public int pending;
+    public int overdue;
+    public Long earliestScheduledTime;
+}
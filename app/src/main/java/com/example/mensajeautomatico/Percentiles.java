@@ -0,0 +1,47 @@
+package com.example.mensajeautomatico;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Percentiles de una muestra de valores (por ejemplo, retrasos en milisegundos).
+ */
+public final class Percentiles {
+
+    public final int count;
+    public final long p50;
+    public final long p95;
+    public final long p99;
+
+    private Percentiles(int count, long p50, long p95, long p99) {
+        this.count = count;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+    }
+
+    public static Percentiles of(long[] values) {
+        if (values == null || values.length == 0) {
+            return new Percentiles(0, 0, 0, 0);
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return new Percentiles(sorted.length, at(sorted, 0.50), at(sorted, 0.95), at(sorted, 0.99));
+    }
+
+    /**
+     * Percentil por el método del rango más cercano sobre un array ordenado.
+     */
+    static long at(long[] sorted, double fraction) {
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    @Override
+    public String toString() {
+        if (count == 0) {
+            return "sin datos";
+        }
+        return String.format(Locale.getDefault(), "n=%d  p50=%d ms  p95=%d ms  p99=%d ms", count, p50, p95, p99);
+    }
+}
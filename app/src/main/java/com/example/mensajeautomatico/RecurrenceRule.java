@@ -0,0 +1,261 @@
+package com.example.mensajeautomatico;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Regla de repetición de un mensaje, con un subconjunto de RRULE (RFC 5545):
+ * FREQ=HOURLY|DAILY|WEEKLY, INTERVAL=n, BYDAY=MO,TU,..., BYHOUR=h,... y BYMINUTE=m,...
+ * Por ejemplo "FREQ=WEEKLY;BYDAY=MO,WE,FR;BYHOUR=9;BYMINUTE=30".
+ * Las partes que no se indican se toman de la ocurrencia anterior (la hora y el día de
+ * la semana en que se programó el mensaje). Solo se calcula la siguiente ocurrencia,
+ * a partir de la anterior: nunca se expanden fechas futuras.
+ */
+public final class RecurrenceRule {
+
+    public static final int HOURLY = 0;
+    public static final int DAILY = 1;
+    public static final int WEEKLY = 2;
+
+    private static final String[] DAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final long[] PERIOD_MS = {HOUR_MS, 24 * HOUR_MS, 7 * 24 * HOUR_MS};
+    // Periodos que se recorren como máximo buscando una ocurrencia (p. ej. HOURLY con BYDAY)
+    private static final int MAX_PERIODS = 2000;
+
+    public final int frequency;
+    public final int interval;
+    // Días de la semana (0 = lunes ... 6 = domingo), horas y minutos ordenados; null si no se indican
+    private final int[] byDay;
+    private final int[] byHour;
+    private final int[] byMinute;
+    private final TimeZone timeZone;
+
+    private RecurrenceRule(int frequency, int interval, int[] byDay, int[] byHour, int[] byMinute, TimeZone timeZone) {
+        this.frequency = frequency;
+        this.interval = interval;
+        this.byDay = byDay;
+        this.byHour = byHour;
+        this.byMinute = byMinute;
+        this.timeZone = timeZone;
+    }
+
+    public static RecurrenceRule parse(String rule) {
+        return parse(rule, TimeZone.getDefault());
+    }
+
+    /**
+     * Interpreta una regla. Lanza IllegalArgumentException si no es válida.
+     */
+    public static RecurrenceRule parse(String rule, TimeZone timeZone) {
+        if (rule == null || rule.trim().isEmpty()) {
+            throw new IllegalArgumentException("Regla vacía");
+        }
+        int frequency = -1;
+        int interval = 1;
+        int[] byDay = null;
+        int[] byHour = null;
+        int[] byMinute = null;
+        for (String part : rule.trim().toUpperCase(Locale.US).split(";")) {
+            int eq = part.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Parte no válida: " + part);
+            }
+            String key = part.substring(0, eq);
+            String value = part.substring(eq + 1);
+            switch (key) {
+                case "FREQ":
+                    if ("HOURLY".equals(value)) {
+                        frequency = HOURLY;
+                    } else if ("DAILY".equals(value)) {
+                        frequency = DAILY;
+                    } else if ("WEEKLY".equals(value)) {
+                        frequency = WEEKLY;
+                    } else {
+                        throw new IllegalArgumentException("Frecuencia no soportada: " + value);
+                    }
+                    break;
+                case "INTERVAL":
+                    interval = parseNumber(value, 1, 1000);
+                    break;
+                case "BYDAY":
+                    byDay = parseDays(value);
+                    break;
+                case "BYHOUR":
+                    byHour = parseList(value, 0, 23);
+                    break;
+                case "BYMINUTE":
+                    byMinute = parseList(value, 0, 59);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Parte no soportada: " + key);
+            }
+        }
+        if (frequency < 0) {
+            throw new IllegalArgumentException("Falta FREQ");
+        }
+        return new RecurrenceRule(frequency, interval, byDay, byHour, byMinute, timeZone);
+    }
+
+    /**
+     * Siguiente ocurrencia estrictamente posterior a after, tomando previous (la
+     * ocurrencia anterior) como referencia de fase, hora y día. Si el dispositivo estuvo
+     * apagado, las ocurrencias perdidas se saltan en lugar de enviarse todas juntas.
+     * Devuelve -1 si la regla no tiene ninguna ocurrencia alcanzable.
+     */
+    public long nextAfter(long previous, long after) {
+        Calendar reference = calendar(previous);
+        int[] days = byDay != null ? byDay : new int[]{dayIndex(reference)};
+        int[] hours = byHour != null ? byHour : new int[]{reference.get(Calendar.HOUR_OF_DAY)};
+        int[] minutes = byMinute != null ? byMinute : new int[]{reference.get(Calendar.MINUTE)};
+
+        Calendar period = calendar(previous);
+        truncateToPeriod(period);
+        int field = frequency == HOURLY ? Calendar.HOUR_OF_DAY : Calendar.DAY_OF_MONTH;
+        int step = frequency == WEEKLY ? 7 * interval : interval;
+
+        // Saltar de golpe los periodos que quedan enteros antes de after (uno menos por
+        // los cambios de hora)
+        long skip = (after - period.getTimeInMillis()) / (PERIOD_MS[frequency] * interval) - 1;
+        if (skip > 0) {
+            period.add(field, (int) Math.min(Integer.MAX_VALUE / step, skip) * step);
+        }
+
+        Calendar candidate = calendar(0);
+        for (int i = 0; i < MAX_PERIODS; i++) {
+            long found = firstInPeriod(period, candidate, days, hours, minutes, after);
+            if (found >= 0) {
+                return found;
+            }
+            period.add(field, step);
+        }
+        return -1;
+    }
+
+    /**
+     * Primera ocurrencia del periodo que empieza en period posterior a after, o -1.
+     */
+    private long firstInPeriod(Calendar period, Calendar candidate, int[] days, int[] hours, int[] minutes,
+                               long after) {
+        switch (frequency) {
+            case HOURLY: {
+                if (!matchesDay(period) || (byHour != null && !contains(byHour, period.get(Calendar.HOUR_OF_DAY)))) {
+                    return -1;
+                }
+                for (int minute : minutes) {
+                    candidate.setTimeInMillis(period.getTimeInMillis());
+                    candidate.set(Calendar.MINUTE, minute);
+                    if (candidate.getTimeInMillis() > after) {
+                        return candidate.getTimeInMillis();
+                    }
+                }
+                return -1;
+            }
+            case DAILY: {
+                if (!matchesDay(period)) {
+                    return -1;
+                }
+                return firstInDay(period, candidate, 0, hours, minutes, after);
+            }
+            default: {
+                for (int day : days) {
+                    long found = firstInDay(period, candidate, day, hours, minutes, after);
+                    if (found >= 0) {
+                        return found;
+                    }
+                }
+                return -1;
+            }
+        }
+    }
+
+    private long firstInDay(Calendar dayStart, Calendar candidate, int dayOffset, int[] hours, int[] minutes,
+                            long after) {
+        for (int hour : hours) {
+            for (int minute : minutes) {
+                candidate.setTimeInMillis(dayStart.getTimeInMillis());
+                candidate.add(Calendar.DAY_OF_MONTH, dayOffset);
+                candidate.set(Calendar.HOUR_OF_DAY, hour);
+                candidate.set(Calendar.MINUTE, minute);
+                if (candidate.getTimeInMillis() > after) {
+                    return candidate.getTimeInMillis();
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean matchesDay(Calendar calendar) {
+        return byDay == null || contains(byDay, dayIndex(calendar));
+    }
+
+    private void truncateToPeriod(Calendar calendar) {
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        if (frequency == HOURLY) {
+            return;
+        }
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        if (frequency == WEEKLY) {
+            // Las semanas empiezan en lunes
+            calendar.add(Calendar.DAY_OF_MONTH, -dayIndex(calendar));
+        }
+    }
+
+    private Calendar calendar(long time) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setFirstDayOfWeek(Calendar.MONDAY);
+        calendar.setTimeInMillis(time);
+        return calendar;
+    }
+
+    /**
+     * Día de la semana empezando en lunes (0) y terminando en domingo (6).
+     */
+    private static int dayIndex(Calendar calendar) {
+        return (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+    }
+
+    private static boolean contains(int[] sorted, int value) {
+        return Arrays.binarySearch(sorted, value) >= 0;
+    }
+
+    private static int[] parseDays(String value) {
+        String[] codes = value.split(",");
+        int[] days = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            days[i] = Arrays.asList(DAY_CODES).indexOf(codes[i].trim());
+            if (days[i] < 0) {
+                throw new IllegalArgumentException("Día no válido: " + codes[i]);
+            }
+        }
+        Arrays.sort(days);
+        return days;
+    }
+
+    private static int[] parseList(String value, int min, int max) {
+        String[] items = value.split(",");
+        int[] numbers = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            numbers[i] = parseNumber(items[i].trim(), min, max);
+        }
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    private static int parseNumber(String value, int min, int max) {
+        int number;
+        try {
+            number = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Número no válido: " + value);
+        }
+        if (number < min || number > max) {
+            throw new IllegalArgumentException("Fuera de rango: " + value);
+        }
+        return number;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Configuración de cuánto historial se mantiene en la tabla "messages".
+ * Los mensajes enviados o con error programados hace más de retentionDays se archivan.
+ */
+public class RetentionPolicy {
+
+    private static final String PREFS_NAME = "app_prefs";
+    private static final String KEY_RETENTION_DAYS = "retention_days";
+    private static final String KEY_BATCH_SIZE = "retention_batch_size";
+
+    public static final int DEFAULT_RETENTION_DAYS = 30;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    public final int retentionDays;
+    public final int batchSize;
+
+    public RetentionPolicy(int retentionDays, int batchSize) {
+        this.retentionDays = retentionDays;
+        this.batchSize = batchSize;
+    }
+
+    public static RetentionPolicy load(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return new RetentionPolicy(
+                prefs.getInt(KEY_RETENTION_DAYS, DEFAULT_RETENTION_DAYS),
+                prefs.getInt(KEY_BATCH_SIZE, DEFAULT_BATCH_SIZE));
+    }
+
+    public static void save(Context context, int retentionDays) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putInt(KEY_RETENTION_DAYS, retentionDays)
+                .apply();
+    }
+
+    /**
+     * Instante antes del cual los mensajes terminados se archivan.
+     */
+    public long cutoff(long now) {
+        return now - retentionDays * 24L * 60 * 60 * 1000;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.Random;
+
+/**
+ * Configuración de los reintentos de envío. Cada fallo transitorio espera el doble
+ * que el anterior (desde baseDelayMs hasta maxDelayMs), con una variación aleatoria
+ * de ±jitter para que los mensajes que fallaron juntos no se reintenten juntos.
+ * Tras maxAttempts intentos el mensaje queda en Error y deja de despertar al despachador.
+ */
+public class RetryPolicy {
+
+    private static final String PREFS_NAME = "app_prefs";
+    private static final String KEY_BASE_DELAY_MS = "retry_base_delay_ms";
+    private static final String KEY_MAX_DELAY_MS = "retry_max_delay_ms";
+    private static final String KEY_MAX_ATTEMPTS = "retry_max_attempts";
+
+    public static final long DEFAULT_BASE_DELAY_MS = 30_000;
+    public static final long DEFAULT_MAX_DELAY_MS = 30 * 60 * 1000;
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    static final double JITTER = 0.2;
+
+    public final long baseDelayMs;
+    public final long maxDelayMs;
+    public final int maxAttempts;
+
+    public RetryPolicy(long baseDelayMs, long maxDelayMs, int maxAttempts) {
+        this.baseDelayMs = Math.max(1000, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    public static RetryPolicy load(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return new RetryPolicy(
+                prefs.getLong(KEY_BASE_DELAY_MS, DEFAULT_BASE_DELAY_MS),
+                prefs.getLong(KEY_MAX_DELAY_MS, DEFAULT_MAX_DELAY_MS),
+                prefs.getInt(KEY_MAX_ATTEMPTS, DEFAULT_MAX_ATTEMPTS));
+    }
+
+    public static void save(Context context, long baseDelayMs, long maxDelayMs, int maxAttempts) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putLong(KEY_BASE_DELAY_MS, baseDelayMs)
+                .putLong(KEY_MAX_DELAY_MS, maxDelayMs)
+                .putInt(KEY_MAX_ATTEMPTS, maxAttempts)
+                .apply();
+    }
+
+    /**
+     * Indica si un mensaje que ya ha fallado attempts veces puede volver a intentarse.
+     */
+    public boolean canRetry(int attempts) {
+        return attempts < maxAttempts;
+    }
+
+    /**
+     * Espera antes del siguiente intento tras el fallo número attempt (1 = primer fallo).
+     */
+    public long delayFor(int attempt, Random random) {
+        long delay = baseDelayMs;
+        for (int i = 1; i < attempt && delay < maxDelayMs; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, maxDelayMs);
+        double factor = 1 + JITTER * (2 * random.nextDouble() - 1);
+        return Math.max(1000, (long) (delay * factor));
+    }
+}
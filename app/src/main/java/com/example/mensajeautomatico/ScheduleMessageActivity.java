@@ -2,22 +2,26 @@ package com.example.mensajeautomatico;
 
 import android.app.DatePickerDialog;
 import android.app.TimePickerDialog;
+import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.DatePicker;
 import android.widget.EditText;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.TimePicker;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.work.Data;
-import androidx.work.OneTimeWorkRequest;
-import androidx.work.WorkManager;
 
 import java.util.Calendar;
-import java.util.concurrent.TimeUnit;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Actividad para la programación de mensajes.
@@ -32,9 +36,26 @@ public class ScheduleMessageActivity extends AppCompatActivity {
     private Button btnSelectTime;
     private TextView tvSelectedDate;
     private TextView tvSelectedTime;
+    private Spinner spPriority;
+    private Spinner spRecurrence;
     private Button btnSchedule;
+    private Button btnImportCsv;
+    private TextView tvImportProgress;
+
+    private static final String TAG = "ScheduleMessageActivity";
+
+    // Opciones de repetición y su regla (null: no se repite)
+    private static final String[] RECURRENCE_LABELS = {
+            "No se repite", "Cada hora", "Cada día", "Cada semana", "De lunes a viernes"};
+    private static final String[] RECURRENCE_RULES = {
+            null, "FREQ=HOURLY", "FREQ=DAILY", "FREQ=WEEKLY", "FREQ=WEEKLY;BYDAY=MO,TU,WE,TH,FR"};
 
     private AppDatabase db;
+    private MessageScheduler scheduler;
+
+    // Selector de documentos para importar mensajes en bloque
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importMessages);
     private int selectedYear, selectedMonth, selectedDay;
     private int selectedHour, selectedMinute;
 
@@ -45,6 +66,7 @@ public class ScheduleMessageActivity extends AppCompatActivity {
 
         // Inicializar la base de datos
         db = AppDatabase.getDatabase(this);
+        scheduler = new MessageScheduler(this);
 
         // Inicializar vistas
         etPhoneNumber = findViewById(R.id.et_phone_number);
@@ -53,11 +75,32 @@ public class ScheduleMessageActivity extends AppCompatActivity {
         btnSelectTime = findViewById(R.id.btn_select_time);
         tvSelectedDate = findViewById(R.id.tv_selected_date);
         tvSelectedTime = findViewById(R.id.tv_selected_time);
+        spPriority = findViewById(R.id.sp_priority);
+        spRecurrence = findViewById(R.id.sp_recurrence);
         btnSchedule = findViewById(R.id.btn_schedule_message);
+        btnImportCsv = findViewById(R.id.btn_import_csv);
+        tvImportProgress = findViewById(R.id.tv_import_progress);
+
+        // Una opción por carril, en el orden de MessagePriority
+        String[] priorities = new String[MessagePriority.LANE_COUNT];
+        for (int i = 0; i < priorities.length; i++) {
+            priorities[i] = MessagePriority.toLabel(i);
+        }
+        ArrayAdapter<String> priorityAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, priorities);
+        priorityAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spPriority.setAdapter(priorityAdapter);
+        spPriority.setSelection(MessagePriority.NORMAL);
+
+        ArrayAdapter<String> recurrenceAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item,
+                RECURRENCE_LABELS);
+        recurrenceAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spRecurrence.setAdapter(recurrenceAdapter);
 
         btnSelectDate.setOnClickListener(v -> showDatePicker());
         btnSelectTime.setOnClickListener(v -> showTimePicker());
         btnSchedule.setOnClickListener(v -> scheduleMessage());
+        btnImportCsv.setOnClickListener(v -> importLauncher.launch(
+                new String[]{"text/csv", "text/comma-separated-values", "text/tab-separated-values", "text/plain"}));
 
         // Inicializar con la fecha y hora actuales
         final Calendar c = Calendar.getInstance();
@@ -106,29 +149,64 @@ public class ScheduleMessageActivity extends AppCompatActivity {
         }
 
         long scheduledTimeMillis = selectedTime.getTimeInMillis();
-        MessageEntity message = new MessageEntity(phoneNumber, messageText, scheduledTimeMillis, "Programado");
+        MessageEntity message = new MessageEntity(phoneNumber, messageText, scheduledTimeMillis, MessageStatus.SCHEDULED);
+        message.priority = spPriority.getSelectedItemPosition();
+        // Solo se guarda la próxima ocurrencia; las siguientes se crean al terminar cada envío
+        message.recurrenceRule = RECURRENCE_RULES[spRecurrence.getSelectedItemPosition()];
 
-        new Thread(() -> {
-            // CAMBIO CLAVE: Capturar el ID devuelto por la inserción
-            long newId = db.messageDao().insert(message);
+        // El usuario ya ha confirmado: con la cola llena se guarda en un hilo propio
+        AppExecutors.executeOrSpawn(AppExecutors.from(this).serialWrites(), "schedule-message", () -> {
+            scheduler.schedule(message);
 
-            Data inputData = new Data.Builder()
-                    .putString(MessageWorker.EXTRA_PHONE_NUMBER, phoneNumber)
-                    .putString(MessageWorker.EXTRA_MESSAGE_TEXT, messageText)
-                    .putInt(MessageWorker.EXTRA_MESSAGE_ID, (int) newId) // <- USAR EL NUEVO ID
-                    .build();
+            runOnUiThread(() -> {
+                Toast.makeText(this, "Mensaje programado correctamente.", Toast.LENGTH_SHORT).show();
+                finish();
+            });
+        });
+    }
 
-            OneTimeWorkRequest messageWork = new OneTimeWorkRequest.Builder(MessageWorker.class)
-                    .setInputData(inputData)
-                    .setInitialDelay(scheduledTimeMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS)
-                    .build();
+    /**
+     * Importa un fichero CSV/TSV con mensajes (telefono, mensaje, fecha) en segundo plano.
+     */
+    private void importMessages(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+        btnImportCsv.setEnabled(false);
+        tvImportProgress.setText("Importando...");
+
+        // En el ejecutor de E/S: una importación larga no debe retrasar las escrituras en serie
+        try {
+            AppExecutors.from(this).diskIO().execute(() -> importInBackground(uri));
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Ejecutor de E/S saturado; no se inicia la importación.");
+            tvImportProgress.setText("Hay demasiadas tareas en curso. Inténtalo de nuevo.");
+            btnImportCsv.setEnabled(true);
+        }
+    }
 
-            WorkManager.getInstance(this).enqueue(messageWork);
+    /**
+     * Importa el fichero y muestra el progreso. Se ejecuta en el ejecutor de E/S.
+     */
+    private void importInBackground(Uri uri) {
+        try {
+            MessageImporter.ImportResult result = new MessageImporter(this, scheduler, MessageImporter.DEFAULT_CHUNK_SIZE)
+                    .importFrom(uri, (imported, rejected) -> runOnUiThread(() ->
+                            tvImportProgress.setText("Importados: " + imported + " - Rechazados: " + rejected)));
 
             runOnUiThread(() -> {
-                Toast.makeText(this, "Mensaje programado correctamente.", Toast.LENGTH_SHORT).show();
-                finish();
+                tvImportProgress.setText(String.format(Locale.getDefault(),
+                        "Importados: %d - Rechazados: %d (%.0f filas/s)",
+                        result.imported, result.rejected, result.rowsPerSecond()));
+                btnImportCsv.setEnabled(true);
+                Toast.makeText(this, "Importación completada.", Toast.LENGTH_SHORT).show();
             });
-        }).start();
+        } catch (Exception e) {
+            Log.e(TAG, "Error al importar mensajes: " + e.getMessage());
+            runOnUiThread(() -> {
+                tvImportProgress.setText("Error al importar el fichero.");
+                btnImportCsv.setEnabled(true);
+            });
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,272 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.util.Log;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import androidx.core.content.pm.PackageInfoCompat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Localiza los elementos de WhatsApp (campo de texto, botón de enviar) con los perfiles
+ * de SelectorProfiles y recuerda cómo se encontró cada uno la última vez: qué estrategia
+ * funcionó y la ruta de índices de hijos desde la raíz.
+ * La siguiente búsqueda baja directamente por esa ruta; los objetivos que ya no están
+ * ahí se buscan todos juntos, con todas sus estrategias, en un único recorrido del árbol.
+ * Las entradas se guardan por paquete y versión de WhatsApp (y revisión del perfil), así
+ * que una actualización invalida las rutas aprendidas. La versión se lee una vez por
+ * conexión del servicio o actualización del paquete, no en cada búsqueda.
+ * Los recorridos usan NodeTraversal, acotado y reciclando los nodos que no devuelve.
+ * Se usa desde el hilo principal del servicio de accesibilidad.
+ */
+public class SelectorCache {
+
+    private static final String TAG = "SelectorCache";
+    private static final String PREFS_NAME = "selector_cache";
+    // Límites del recorrido completo: las pantallas de chat no pasan de unas decenas de
+    // niveles ni de unos cientos de nodos
+    static final int MAX_DEPTH = 40;
+    static final int MAX_NODES = 2000;
+
+    private static volatile SelectorCache INSTANCE;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    // Versión instalada de cada paquete, leída la primera vez tras conectarse el servicio
+    // o actualizarse el paquete (ver clearVersions)
+    private final Map<String, Long> versions = new HashMap<>();
+    private final AccessibilityNodes nodes = AccessibilityNodes.get();
+    private final NodeTraversal<AccessibilityNodeInfo> traversal = new NodeTraversal<>(nodes, MAX_DEPTH, MAX_NODES);
+    private int hits;
+    private int misses;
+    private long nodesVisited;
+    private int lastNodesVisited;
+
+    public static SelectorCache getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (SelectorCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new SelectorCache(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private SelectorCache(Context context) {
+        this.context = context;
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Busca los objetivos indicados (ver SelectorProfiles.TARGET_*) en la ventana de root.
+     * Devuelve un nodo por objetivo, o null si no está. Los nodos devueltos son del
+     * llamante, que los suelta con AccessibilityNodes.release.
+     */
+    public AccessibilityNodeInfo[] find(AccessibilityNodeInfo root, String... targets) {
+        AccessibilityNodeInfo[] results = new AccessibilityNodeInfo[targets.length];
+        String packageName = root.getPackageName() != null ? root.getPackageName().toString() : "";
+        SelectorProfile profile = SelectorProfiles.getInstance(context).forPackage(packageName);
+        if (profile == null) {
+            Log.w(TAG, "Sin perfil de selectores para " + packageName);
+            return results;
+        }
+        int visited = 0;
+
+        String tag = versionOf(packageName) + "/" + profile.revision;
+        List<Integer> missing = new ArrayList<>(targets.length);
+        for (int i = 0; i < targets.length; i++) {
+            int target = profile.targetIndex(targets[i]);
+            if (target < 0) {
+                continue;
+            }
+            int[] pathVisited = {0};
+            results[i] = findCached(root, key(packageName, targets[i]), tag, profile, target, pathVisited);
+            visited += pathVisited[0];
+            if (results[i] != null) {
+                hits++;
+            } else {
+                missing.add(i);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            misses += missing.size();
+            searchAll(root, profile, targets, missing, results, tag);
+            visited += traversal.getLastVisited();
+        }
+        lastNodesVisited = visited;
+        nodesVisited += visited;
+        return results;
+    }
+
+    /**
+     * Olvida las versiones leídas: se vuelven a pedir en la siguiente búsqueda. El servicio
+     * lo llama al conectarse y cuando se instala o actualiza un paquete, no en cada fallo
+     * (que es lo normal mientras se espera al botón de enviar).
+     */
+    public void clearVersions() {
+        versions.clear();
+    }
+
+    public int getHitCount() {
+        return hits;
+    }
+
+    public int getMissCount() {
+        return misses;
+    }
+
+    public int getLastNodesVisited() {
+        return lastNodesVisited;
+    }
+
+    public String describe() {
+        int lookups = hits + misses;
+        return String.format(Locale.getDefault(), "Selectores: %d aciertos, %d fallos, %.1f nodos/búsqueda (última: %d)",
+                hits, misses, lookups == 0 ? 0.0 : nodesVisited / (double) lookups, lastNodesVisited);
+    }
+
+    /**
+     * Un único recorrido para todos los objetivos que faltan (ver NodeTraversal.findBest):
+     * cada nodo se compara con todas sus estrategias y se queda, por objetivo, el de mejor
+     * estrategia.
+     */
+    private void searchAll(AccessibilityNodeInfo root, SelectorProfile profile, String[] targets,
+                           List<Integer> missing, AccessibilityNodeInfo[] results, String tag) {
+        int count = missing.size();
+        int[] wanted = new int[count];
+        for (int k = 0; k < count; k++) {
+            wanted[k] = profile.targetIndex(targets[missing.get(k)]);
+        }
+        AccessibilityNodeInfo[] found = new AccessibilityNodeInfo[count];
+        int[] bestRank = new int[count];
+        int[][] bestPath = new int[count][MAX_DEPTH];
+        int[] bestPathLength = new int[count];
+
+        traversal.findBest(root, (k, node) -> profile.rank(wanted[k], node.getViewIdResourceName(),
+                node.getClassName(), node.getContentDescription()), found, bestRank, bestPath, bestPathLength);
+        if (traversal.wasLastTruncated()) {
+            Log.w(TAG, "Recorrido cortado tras " + MAX_NODES + " nodos");
+        }
+        for (int k = 0; k < count; k++) {
+            results[missing.get(k)] = found[k];
+        }
+
+        // Guardar solo las entradas que cambian
+        SharedPreferences.Editor editor = null;
+        for (int k = 0; k < count; k++) {
+            if (bestRank[k] < 0) {
+                continue;
+            }
+            String key = key(profile.packageName, targets[missing.get(k)]);
+            String entry = tag + "|" + bestRank[k] + "|" + encode(bestPath[k], bestPathLength[k]);
+            if (!entry.equals(prefs.getString(key, null))) {
+                if (editor == null) {
+                    editor = prefs.edit();
+                }
+                editor.putString(key, entry);
+            }
+        }
+        if (editor != null) {
+            editor.apply();
+        }
+    }
+
+    /**
+     * Baja por la ruta guardada y comprueba que el nodo sigue cumpliendo su estrategia.
+     */
+    private AccessibilityNodeInfo findCached(AccessibilityNodeInfo root, String key, String tag,
+                                             SelectorProfile profile, int target, int[] visited) {
+        String entry = prefs.getString(key, null);
+        if (entry == null) {
+            return null;
+        }
+        String[] parts = entry.split("\\|", -1);
+        if (parts.length != 3 || !parts[0].equals(tag)) {
+            return null;
+        }
+        int strategy;
+        int[] cachedPath;
+        try {
+            strategy = Integer.parseInt(parts[1]);
+            cachedPath = decode(parts[2]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (strategy < 0 || strategy >= profile.strategyCount(target)) {
+            return null;
+        }
+        // Bajar por la ruta soltando cada nivel intermedio
+        AccessibilityNodeInfo node = root;
+        visited[0]++;
+        for (int index : cachedPath) {
+            AccessibilityNodeInfo child = index < node.getChildCount() ? nodes.child(node, index) : null;
+            if (node != root) {
+                nodes.recycle(node);
+            }
+            if (child == null) {
+                return null;
+            }
+            node = child;
+            visited[0]++;
+        }
+        if (profile.matches(target, strategy, node.getViewIdResourceName(), node.getClassName(),
+                node.getContentDescription())) {
+            return node;
+        }
+        if (node != root) {
+            nodes.recycle(node);
+        }
+        return null;
+    }
+
+    private static String key(String packageName, String target) {
+        return packageName + "/" + target;
+    }
+
+    private long versionOf(String packageName) {
+        Long version = versions.get(packageName);
+        if (version == null) {
+            try {
+                version = PackageInfoCompat.getLongVersionCode(
+                        context.getPackageManager().getPackageInfo(packageName, 0));
+            } catch (PackageManager.NameNotFoundException e) {
+                Log.w(TAG, "Paquete no encontrado: " + packageName);
+                version = -1L;
+            }
+            versions.put(packageName, version);
+        }
+        return version;
+    }
+
+    static String encode(int[] path, int length) {
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                encoded.append('.');
+            }
+            encoded.append(path[i]);
+        }
+        return encoded.toString();
+    }
+
+    static int[] decode(String encoded) {
+        if (encoded.isEmpty()) {
+            return new int[0];
+        }
+        String[] items = encoded.split("\\.");
+        int[] path = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            path[i] = Integer.parseInt(items[i]);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.mensajeautomatico;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Selectores de los elementos de un paquete (com.whatsapp, com.whatsapp.w4b...), ya
+ * compilados para comprobarse todos a la vez en un único recorrido del árbol: cada
+ * objetivo (campo de texto, botón de enviar) tiene sus estrategias en orden de
+ * preferencia, y rank dice cuál es la mejor que cumple un nodo.
+ * Se crean a partir del JSON de SelectorProfiles.
+ */
+public final class SelectorProfile {
+
+    public static final String KIND_RESOURCE_ID = "id";
+    public static final String KIND_CLASS_NAME = "class";
+    public static final String KIND_DESCRIPTION = "desc";
+
+    /**
+     * Una forma de reconocer el elemento: por id de recurso, por clase o por descripción
+     * (en cualquiera de sus idiomas, sin distinguir mayúsculas).
+     */
+    public static final class Strategy {
+        public final String kind;
+        private final String[] values;
+
+        public Strategy(String kind, List<String> values) {
+            if (!KIND_RESOURCE_ID.equals(kind) && !KIND_CLASS_NAME.equals(kind) && !KIND_DESCRIPTION.equals(kind)) {
+                throw new IllegalArgumentException("Tipo de selector no soportado: " + kind);
+            }
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException("Selector sin valores: " + kind);
+            }
+            this.kind = kind;
+            this.values = values.toArray(new String[0]);
+        }
+
+        public boolean matches(CharSequence viewId, CharSequence className, CharSequence description) {
+            switch (kind) {
+                case KIND_RESOURCE_ID:
+                    return contains(viewId, false);
+                case KIND_CLASS_NAME:
+                    return contains(className, false);
+                default:
+                    return contains(description, true);
+            }
+        }
+
+        private boolean contains(CharSequence actual, boolean ignoreCase) {
+            if (actual == null) {
+                return false;
+            }
+            String text = actual.toString();
+            for (String value : values) {
+                if (ignoreCase ? value.equalsIgnoreCase(text) : value.equals(text)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public final String packageName;
+    // Revisión del fichero de perfiles: si cambia, las rutas aprendidas dejan de valer
+    public final int revision;
+    private final String[] targets;
+    private final Strategy[][] strategies;
+
+    public SelectorProfile(String packageName, int revision, String[] targets, Strategy[][] strategies) {
+        this.packageName = packageName;
+        this.revision = revision;
+        this.targets = targets;
+        this.strategies = strategies;
+    }
+
+    public int targetCount() {
+        return targets.length;
+    }
+
+    /**
+     * Índice del objetivo, o -1 si el perfil no lo define.
+     */
+    public int targetIndex(String target) {
+        return Arrays.asList(targets).indexOf(target);
+    }
+
+    public String targetName(int target) {
+        return targets[target];
+    }
+
+    public int strategyCount(int target) {
+        return strategies[target].length;
+    }
+
+    /**
+     * Si alguna estrategia del perfil es del tipo kind (KIND_*).
+     */
+    public boolean usesKind(String kind) {
+        for (Strategy[] candidates : strategies) {
+            for (Strategy candidate : candidates) {
+                if (candidate.kind.equals(kind)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean matches(int target, int strategy, CharSequence viewId, CharSequence className,
+                           CharSequence description) {
+        return strategies[target][strategy].matches(viewId, className, description);
+    }
+
+    /**
+     * Mejor estrategia (la de menor índice) del objetivo que cumple el nodo, o -1.
+     */
+    public int rank(int target, CharSequence viewId, CharSequence className, CharSequence description) {
+        Strategy[] candidates = strategies[target];
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i].matches(viewId, className, description)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
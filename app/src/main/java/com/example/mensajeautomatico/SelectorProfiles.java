@@ -0,0 +1,151 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Perfiles de selectores por paquete, leídos de JSON para que una actualización de
+ * WhatsApp o un dispositivo en otro idioma no obliguen a publicar otra versión:
+ * - res/raw/selector_profiles.json, incluido en la app;
+ * - files/selector_profiles.json, si existe y es válido, lo sustituye.
+ * Formato:
+ * {"revision": 1, "profiles": {"com.whatsapp": {"entry": [{"id": ["com.whatsapp:id/entry"]},
+ *  {"class": "android.widget.EditText"}], "send": [...]}}}
+ * Cada objetivo lista sus estrategias en orden de preferencia; cada estrategia tiene un
+ * único tipo (id, class o desc) con uno o varios valores.
+ */
+public final class SelectorProfiles {
+
+    private static final String TAG = "SelectorProfiles";
+    public static final String OVERRIDE_FILE = "selector_profiles.json";
+
+    public static final String TARGET_ENTRY = "entry";
+    public static final String TARGET_SEND = "send";
+
+    private static volatile SelectorProfiles INSTANCE;
+
+    private final Map<String, SelectorProfile> profiles;
+
+    public static SelectorProfiles getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (SelectorProfiles.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = load(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private SelectorProfiles(Map<String, SelectorProfile> profiles) {
+        this.profiles = profiles;
+    }
+
+    /**
+     * Perfil del paquete, o null si no hay ninguno para él.
+     */
+    public SelectorProfile forPackage(String packageName) {
+        return profiles.get(packageName);
+    }
+
+    static SelectorProfiles load(Context context) {
+        File override = new File(context.getFilesDir(), OVERRIDE_FILE);
+        if (override.isFile()) {
+            try (InputStream in = new FileInputStream(override)) {
+                SelectorProfiles loaded = parse(read(in));
+                Log.d(TAG, "Perfiles de selectores cargados de " + override);
+                return loaded;
+            } catch (IOException | JSONException | IllegalArgumentException e) {
+                Log.e(TAG, "Perfiles de " + override + " no válidos, se usan los incluidos: " + e.getMessage());
+            }
+        }
+        try (InputStream in = context.getResources().openRawResource(R.raw.selector_profiles)) {
+            return parse(read(in));
+        } catch (IOException | JSONException | IllegalArgumentException e) {
+            // El fichero incluido se prueba en SelectorProfilesTest: no debería pasar
+            Log.e(TAG, "Perfiles incluidos no válidos: " + e.getMessage());
+            return new SelectorProfiles(new HashMap<>());
+        }
+    }
+
+    /**
+     * Interpreta el JSON de perfiles. Lanza JSONException o IllegalArgumentException si
+     * no es válido.
+     */
+    static SelectorProfiles parse(String json) throws JSONException {
+        JSONObject root = new JSONObject(json);
+        int revision = root.optInt("revision", 0);
+        JSONObject packages = root.getJSONObject("profiles");
+        Map<String, SelectorProfile> profiles = new HashMap<>();
+        for (Iterator<String> it = packages.keys(); it.hasNext(); ) {
+            String packageName = it.next();
+            profiles.put(packageName, parseProfile(packageName, revision, packages.getJSONObject(packageName)));
+        }
+        return new SelectorProfiles(profiles);
+    }
+
+    private static SelectorProfile parseProfile(String packageName, int revision, JSONObject json)
+            throws JSONException {
+        List<String> targets = new ArrayList<>();
+        List<SelectorProfile.Strategy[]> strategies = new ArrayList<>();
+        for (Iterator<String> it = json.keys(); it.hasNext(); ) {
+            String target = it.next();
+            JSONArray list = json.getJSONArray(target);
+            SelectorProfile.Strategy[] parsed = new SelectorProfile.Strategy[list.length()];
+            for (int i = 0; i < list.length(); i++) {
+                parsed[i] = parseStrategy(list.getJSONObject(i));
+            }
+            if (parsed.length == 0) {
+                throw new IllegalArgumentException("Objetivo sin estrategias: " + packageName + "/" + target);
+            }
+            targets.add(target);
+            strategies.add(parsed);
+        }
+        return new SelectorProfile(packageName, revision, targets.toArray(new String[0]),
+                strategies.toArray(new SelectorProfile.Strategy[0][]));
+    }
+
+    private static SelectorProfile.Strategy parseStrategy(JSONObject json) throws JSONException {
+        if (json.length() != 1) {
+            throw new IllegalArgumentException("Cada estrategia debe tener un único tipo: " + json);
+        }
+        String kind = json.keys().next();
+        List<String> values = new ArrayList<>();
+        JSONArray array = json.optJSONArray(kind);
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                values.add(array.getString(i));
+            }
+        } else {
+            values.add(json.getString(kind));
+        }
+        return new SelectorProfile.Strategy(kind, values);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        StringBuilder text = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            text.append(line).append('\n');
+        }
+        return text.toString();
+    }
+}
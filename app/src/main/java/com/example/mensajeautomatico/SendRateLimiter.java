@@ -0,0 +1,111 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Limita el ritmo de entrega al servicio de accesibilidad, que solo puede escribir un
+ * mensaje a la vez: un cubo de fichas global (mensajes por minuto) y una separación
+ * mínima entre mensajes al mismo destinatario.
+ * El estado del cubo se guarda en SharedPreferences para que un reinicio no lo vacíe;
+ * la última entrega a cada número se lee de la columna dispatchedAt de los mensajes.
+ */
+public class SendRateLimiter {
+
+    private static final String PREFS_NAME = "app_prefs";
+    private static final String KEY_MESSAGES_PER_MINUTE = "rate_messages_per_minute";
+    private static final String KEY_RECIPIENT_SPACING_MS = "rate_recipient_spacing_ms";
+    private static final String KEY_TOKENS = "rate_tokens";
+    private static final String KEY_LAST_REFILL = "rate_last_refill";
+
+    // El servicio tarda unos segundos por mensaje (abrir el chat, escribir y enviar)
+    public static final int DEFAULT_MESSAGES_PER_MINUTE = 6;
+    public static final long DEFAULT_RECIPIENT_SPACING_MS = 60_000;
+    // Límites de la configuración: más de uno por segundo no da tiempo a enviar, y una
+    // espera de más de un día por destinatario deja la cola parada
+    public static final int MAX_MESSAGES_PER_MINUTE = 60;
+    public static final long MAX_RECIPIENT_SPACING_MS = 24 * 60 * 60 * 1000L;
+    // Fichas acumulables: sin ráfagas, los mensajes salen de uno en uno
+    static final int BURST = 1;
+
+    public final int messagesPerMinute;
+    public final long recipientSpacingMs;
+
+    private double tokens;
+    private long lastRefillAt;
+
+    public SendRateLimiter(int messagesPerMinute, long recipientSpacingMs, double tokens, long lastRefillAt) {
+        this.messagesPerMinute = Math.max(1, messagesPerMinute);
+        this.recipientSpacingMs = Math.max(0, recipientSpacingMs);
+        this.tokens = tokens;
+        this.lastRefillAt = lastRefillAt;
+    }
+
+    public static SendRateLimiter load(Context context) {
+        SharedPreferences prefs = prefs(context);
+        return new SendRateLimiter(
+                prefs.getInt(KEY_MESSAGES_PER_MINUTE, DEFAULT_MESSAGES_PER_MINUTE),
+                prefs.getLong(KEY_RECIPIENT_SPACING_MS, DEFAULT_RECIPIENT_SPACING_MS),
+                prefs.getFloat(KEY_TOKENS, BURST),
+                prefs.getLong(KEY_LAST_REFILL, 0));
+    }
+
+    /**
+     * Guarda el estado del cubo tras una ronda de envíos.
+     */
+    public void saveState(Context context) {
+        prefs(context).edit()
+                .putFloat(KEY_TOKENS, (float) tokens)
+                .putLong(KEY_LAST_REFILL, lastRefillAt)
+                .apply();
+    }
+
+    public static void saveConfig(Context context, int messagesPerMinute, long recipientSpacingMs) {
+        prefs(context).edit()
+                .putInt(KEY_MESSAGES_PER_MINUTE, messagesPerMinute)
+                .putLong(KEY_RECIPIENT_SPACING_MS, recipientSpacingMs)
+                .apply();
+    }
+
+    /**
+     * Toma una ficha si hay una disponible. Devuelve 0 si se puede enviar ya, o los
+     * milisegundos hasta que haya ficha.
+     */
+    public long acquire(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * intervalMs());
+    }
+
+    /**
+     * Milisegundos que faltan para poder escribir de nuevo a un destinatario cuya última
+     * entrega fue lastDispatchedAt (0 si ya se puede).
+     */
+    public long recipientDelay(Long lastDispatchedAt, long now) {
+        if (lastDispatchedAt == null) {
+            return 0;
+        }
+        return Math.max(0, lastDispatchedAt + recipientSpacingMs - now);
+    }
+
+    private void refill(long now) {
+        if (lastRefillAt <= 0 || now < lastRefillAt) {
+            // Primer uso o reloj atrasado: empezar con el cubo lleno
+            tokens = BURST;
+        } else {
+            tokens = Math.min(BURST, tokens + (now - lastRefillAt) / (double) intervalMs());
+        }
+        lastRefillAt = now;
+    }
+
+    private long intervalMs() {
+        return 60_000L / messagesPerMinute;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.mensajeautomatico;
+
+import java.util.ArrayDeque;
+
+/**
+ * Cola FIFO de envíos del servicio de accesibilidad y máquina de estados de cada envío:
+ * IDLE -> OPENING -> COMPOSING -> SENDING -> CONFIRMING -> DONE / FAILED.
+ * Los mensajes que llegan mientras hay un envío en curso esperan su turno en lugar de
+ * pisar al actual, y el siguiente empieza en cuanto el anterior termina.
+ * No hay esperas fijas: cada etapa se intenta al entrar en ella y de nuevo con cada
+ * cambio de contenido de la ventana (onContentChanged), y avanza en cuanto el campo de
+ * texto o el botón están listos. Un sondeo lento cubre los eventos perdidos. El tiempo
+ * máximo de cada etapa se adapta a lo que ha tardado en los últimos envíos
+ * (AdaptiveTimeout).
+ * Las operaciones sobre WhatsApp y los temporizadores los pone el Driver, de modo que la
+ * máquina no depende de Android. No es segura entre hilos: todas las llamadas (y las
+ * tareas que programa el Driver) deben ir por el mismo hilo, el principal en el servicio.
+ */
+public class SendStateMachine {
+
+    public static final int IDLE = 0;
+    public static final int OPENING = 1;
+    public static final int COMPOSING = 2;
+    public static final int SENDING = 3;
+    public static final int CONFIRMING = 4;
+    public static final int DONE = 5;
+    public static final int FAILED = 6;
+
+    private static final String[] STATE_LABELS = {
+            "Libre", "Abriendo", "Escribiendo", "Enviando", "Confirmando", "Enviado", "Fallido"
+    };
+
+    // Sondeo de respaldo por si se pierde un evento de cambio de contenido
+    static final long POLL_MS = 500;
+
+    /**
+     * Operaciones de la máquina sobre el exterior. open, compose, clickSend y confirmSent
+     * deben responder sin bloquear el hilo.
+     */
+    public interface Driver {
+        /**
+         * Empieza a abrir el chat del mensaje. La apertura se confirma llamando a
+         * onWindowChanged, o se cancela con fail.
+         */
+        void open(int messageId);
+
+        /**
+         * Escribe el texto en el campo del chat. Devuelve false si aún no está.
+         */
+        boolean compose(int messageId);
+
+        /**
+         * Pulsa el botón de enviar. Devuelve false si aún no está o no se puede pulsar.
+         */
+        boolean clickSend(int messageId);
+
+        /**
+         * Devuelve true cuando el mensaje ha salido (el campo de texto ha quedado vacío).
+         */
+        boolean confirmSent(int messageId);
+
+        /**
+         * Resultado final de un envío. Un fallo con motivo es transitorio (RetryPolicy);
+         * sin motivo es definitivo. Un fallo después de pulsar enviar (CONFIRMING) llega
+         * siempre sin motivo: el mensaje pudo salir y reintentarlo lo duplicaría.
+         */
+        void finish(int messageId, boolean success, String error);
+
+        /**
+         * La cola se ha vaciado: salir de WhatsApp.
+         */
+        void onIdle();
+
+        void postDelayed(Runnable task, long delayMs);
+
+        /**
+         * Reloj monótono en milisegundos.
+         */
+        long now();
+    }
+
+    private final Driver driver;
+    private final ArrayDeque<Integer> queue = new ArrayDeque<>();
+    // Tiempo máximo de cada etapa, indexado por estado (OPENING..CONFIRMING)
+    private final AdaptiveTimeout[] timeouts = {
+            null,
+            new AdaptiveTimeout(10_000, 3_000, 20_000),
+            new AdaptiveTimeout(5_000, 1_500, 15_000),
+            new AdaptiveTimeout(3_000, 1_000, 10_000),
+            new AdaptiveTimeout(3_000, 1_000, 10_000),
+    };
+    private int state = IDLE;
+    private int currentId = -1;
+    // Aumenta con cada cambio de etapa: las tareas programadas para otra etapa se ignoran
+    private int stageToken;
+    private long stageStartedAt;
+    private int completed;
+    private int failed;
+
+    public SendStateMachine(Driver driver) {
+        this.driver = driver;
+    }
+
+    /**
+     * Añade un mensaje a la cola y lo empieza si no hay otro en curso. Un id que ya está
+     * en la cola o en curso se ignora.
+     */
+    public void enqueue(int messageId) {
+        if (messageId == -1 || messageId == currentId || queue.contains(messageId)) {
+            return;
+        }
+        queue.addLast(messageId);
+        if (!isBusy()) {
+            startNext();
+        }
+    }
+
+    /**
+     * Ha cambiado la ventana de WhatsApp. Devuelve true si era la apertura del chat del
+     * envío en curso.
+     */
+    public boolean onWindowChanged() {
+        if (state != OPENING) {
+            return false;
+        }
+        enterStage(COMPOSING);
+        return true;
+    }
+
+    /**
+     * Ha cambiado el contenido de la ventana: reintentar la etapa en curso ya.
+     */
+    public void onContentChanged() {
+        if (state >= COMPOSING && state <= CONFIRMING) {
+            attempt();
+        }
+    }
+
+    /**
+     * Termina el envío en curso con un fallo (por ejemplo, si no se pudo leer el mensaje
+     * o abrir WhatsApp).
+     */
+    public void fail(int messageId, String error) {
+        if (isBusy() && messageId == currentId) {
+            finish(false, error);
+        }
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public int getCurrentId() {
+        return currentId;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getCompletedCount() {
+        return completed;
+    }
+
+    public int getFailedCount() {
+        return failed;
+    }
+
+    /**
+     * Tiempo máximo actual de la etapa state (OPENING..CONFIRMING).
+     */
+    public long getTimeoutMs(int state) {
+        return timeouts[state].timeoutMs();
+    }
+
+    public static String stateLabel(int state) {
+        return state >= 0 && state < STATE_LABELS.length ? STATE_LABELS[state] : "Desconocido";
+    }
+
+    private boolean isBusy() {
+        return state >= OPENING && state <= CONFIRMING;
+    }
+
+    private void startNext() {
+        Integer next = queue.pollFirst();
+        if (next == null) {
+            state = IDLE;
+            currentId = -1;
+            driver.onIdle();
+            return;
+        }
+        currentId = next;
+        enterStage(OPENING);
+        driver.open(currentId);
+    }
+
+    /**
+     * Pasa a la etapa next: anota lo que tardó la anterior, arma el tiempo máximo de la
+     * nueva y la intenta de inmediato.
+     */
+    private void enterStage(int next) {
+        long now = driver.now();
+        if (state >= OPENING && state <= CONFIRMING && next == state + 1) {
+            timeouts[state].record(now - stageStartedAt);
+        }
+        state = next;
+        stageStartedAt = now;
+        final int token = ++stageToken;
+        driver.postDelayed(() -> {
+            if (token == stageToken) {
+                timeouts[state].recordTimeout();
+                finish(false, "Timeout en el estado " + stateLabel(state));
+            }
+        }, timeouts[next].timeoutMs());
+        if (next != OPENING) {
+            poll(token);
+        }
+    }
+
+    private void poll(int token) {
+        if (token != stageToken) {
+            return;
+        }
+        attempt();
+        if (token == stageToken) {
+            driver.postDelayed(() -> poll(token), POLL_MS);
+        }
+    }
+
+    /**
+     * Intenta completar la etapa en curso y, si lo consigue, pasa a la siguiente.
+     */
+    private void attempt() {
+        switch (state) {
+            case COMPOSING:
+                if (driver.compose(currentId)) {
+                    enterStage(SENDING);
+                }
+                break;
+            case SENDING:
+                if (driver.clickSend(currentId)) {
+                    enterStage(CONFIRMING);
+                }
+                break;
+            case CONFIRMING:
+                if (driver.confirmSent(currentId)) {
+                    timeouts[CONFIRMING].record(driver.now() - stageStartedAt);
+                    finish(true, null);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void finish(boolean success, String error) {
+        if (!success && state == CONFIRMING) {
+            // El clic ya se hizo: enviado sin confirmar, nunca se reintenta
+            error = null;
+        }
+        stageToken++;
+        state = success ? DONE : FAILED;
+        if (success) {
+            completed++;
+        } else {
+            failed++;
+        }
+        driver.finish(currentId, success, error);
+        startNext();
+    }
+}
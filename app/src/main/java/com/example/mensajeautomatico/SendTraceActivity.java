@@ -0,0 +1,64 @@
+package com.example.mensajeautomatico;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.TextView;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Muestra p50/p95/p99 del tiempo que pasa cada envío en cada etapa (ver SendTracer),
+ * sobre los últimos envíos trazados, y la eficacia de la caché de selectores.
+ */
+public class SendTraceActivity extends AppCompatActivity {
+
+    private static final String TAG = "SendTraceActivity";
+
+    // Envíos recientes sobre los que se calculan los percentiles
+    private static final int LAST_SENDS = 200;
+
+    private TextView tvTraceScope;
+    private TextView tvTraceTable;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_send_traces);
+
+        tvTraceScope = findViewById(R.id.tv_trace_scope);
+        tvTraceTable = findViewById(R.id.tv_trace_table);
+        tvTraceScope.setText("Últimos " + LAST_SENDS + " envíos. Cada etapa mide el tiempo desde la anterior.");
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        SendTracer tracer = SendTracer.getInstance(this);
+        try {
+            AppExecutors.from(this).diskIO().execute(() -> {
+                Percentiles[] stages = tracer.stagePercentiles(LAST_SENDS);
+                String table = render(stages);
+                // La caché de selectores se usa desde el hilo principal: se lee desde él
+                runOnUiThread(() -> tvTraceTable.setText(table + "\n" + SelectorCache.getInstance(this).describe()
+                        + "\n" + AccessibilityNodes.get().describe()));
+            });
+        } catch (RejectedExecutionException e) {
+            // Se vuelve a pedir en el siguiente onResume
+            Log.w(TAG, "Ejecutor de E/S saturado; no se carga la tabla de trazas.");
+        }
+    }
+
+    private static String render(Percentiles[] stages) {
+        StringBuilder table = new StringBuilder(String.format(Locale.getDefault(),
+                "%-12s %5s %8s %8s %8s%n", "etapa", "n", "p50 ms", "p95 ms", "p99 ms"));
+        for (int stage = 0; stage < stages.length; stage++) {
+            String label = stage < SendTracer.STAGE_COUNT ? SendTracer.stageLabel(stage) : "Total";
+            Percentiles p = stages[stage];
+            table.append(String.format(Locale.getDefault(), "%-12s %5d %8d %8d %8d%n",
+                    label, p.count, p.p50, p.p95, p.p99));
+        }
+        return table.toString();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.mensajeautomatico;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface SendTraceDao {
+    @Insert
+    void insertAll(List<SendTraceEntity> traces);
+
+    // Marcas de los :limit mensajes trazados más recientemente, agrupadas por mensaje
+    @Query("SELECT * FROM send_traces WHERE messageId IN (SELECT messageId FROM send_traces "
+            + "GROUP BY messageId ORDER BY MAX(id) DESC LIMIT :limit) ORDER BY messageId, id")
+    List<SendTraceEntity> getTracesOfLatestMessages(int limit);
+}
@@ -0,0 +1,26 @@
+package com.example.mensajeautomatico;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Marca de tiempo de una etapa del envío de un mensaje (ver SendTracer).
+ * elapsedMs es SystemClock.elapsedRealtime(): monótono, pero se reinicia con el
+ * dispositivo. La tabla se recorta como un búfer circular por un trigger.
+ */
+@Entity(tableName = "send_traces",
+        indices = {@Index(value = {"messageId"})})
+public class SendTraceEntity {
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+    public int messageId;
+    public int stage;       // Ver SendTracer.STAGE_*
+    public long elapsedMs;
+
+    public SendTraceEntity(int messageId, int stage, long elapsedMs) {
+        this.messageId = messageId;
+        this.stage = stage;
+        this.elapsedMs = elapsedMs;
+    }
+}
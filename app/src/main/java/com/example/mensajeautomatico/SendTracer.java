@@ -0,0 +1,189 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Traza de tiempos de cada envío, etapa a etapa, desde que el mensaje vence hasta el
+ * clic en el botón de enviar de WhatsApp. Las marcas usan SystemClock.elapsedRealtime()
+ * y se guardan en send_traces desde el ejecutor de escrituras en serie, así que
+ * record() se puede llamar desde el hilo principal del servicio de accesibilidad.
+ */
+public final class SendTracer {
+
+    private static final String TAG = "SendTracer";
+
+    // Etapas en el orden en que ocurren
+    public static final int STAGE_DUE = 0;              // Hora programada (o del reintento)
+    public static final int STAGE_DISPATCH_START = 1;   // Inicio de la ejecución del despachador
+    public static final int STAGE_BROADCAST_SENT = 2;   // Broadcast al servicio enviado
+    public static final int STAGE_SERVICE_RECEIVED = 3; // openWhatsAppAndSendMessage
+    public static final int STAGE_WINDOW_CHANGED = 4;   // Primer TYPE_WINDOW_STATE_CHANGED de WhatsApp
+    public static final int STAGE_ENTRY_FOUND = 5;      // Campo de texto encontrado
+    public static final int STAGE_TEXT_SET = 6;         // Texto escrito
+    public static final int STAGE_SEND_CLICKED = 7;     // Clic en enviar
+    public static final int STAGE_COUNT = 8;
+
+    private static final String[] STAGE_LABELS = {
+            "Vencido", "Despachador", "Broadcast", "Servicio", "Ventana", "Campo", "Texto", "Enviar"};
+
+    // Filas que se conservan en send_traces (unos 600 envíos completos)
+    static final int MAX_ROWS = 5000;
+
+    private static volatile SendTracer INSTANCE;
+
+    private final SendTraceDao dao;
+    private final Executor writer;
+
+    public static SendTracer getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (SendTracer.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new SendTracer(AppDatabase.getDatabase(context).sendTraceDao(),
+                            AppExecutors.from(context).serialWrites());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private SendTracer(SendTraceDao dao, Executor writer) {
+        this.dao = dao;
+        this.writer = writer;
+    }
+
+    public static String stageLabel(int stage) {
+        return stage >= 0 && stage < STAGE_COUNT ? STAGE_LABELS[stage] : "?";
+    }
+
+    /**
+     * Anota que el mensaje acaba de pasar por una etapa.
+     */
+    public void record(int messageId, int stage) {
+        record(messageId, stage, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Anota una etapa con una marca ya tomada de SystemClock.elapsedRealtime().
+     */
+    public void record(int messageId, int stage, long elapsedMs) {
+        if (messageId == -1) {
+            return;
+        }
+        List<SendTraceEntity> traces = new ArrayList<>(1);
+        traces.add(new SendTraceEntity(messageId, stage, elapsedMs));
+        write(traces);
+    }
+
+    /**
+     * Anota las etapas del despachador de un lote: la hora programada de cada mensaje
+     * (pasada al reloj monótono) y el inicio de la ejecución.
+     */
+    public void recordDispatch(List<MessageEntity> messages, long dispatchStartElapsed, long dispatchStartWall) {
+        List<SendTraceEntity> traces = new ArrayList<>(messages.size() * 2);
+        for (MessageEntity message : messages) {
+            long due = message.status == MessageStatus.RETRY && message.nextAttemptAt != null
+                    ? message.nextAttemptAt : message.scheduledTime;
+            traces.add(new SendTraceEntity(message.id, STAGE_DUE, dispatchStartElapsed - (dispatchStartWall - due)));
+            traces.add(new SendTraceEntity(message.id, STAGE_DISPATCH_START, dispatchStartElapsed));
+        }
+        write(traces);
+    }
+
+    private void write(List<SendTraceEntity> traces) {
+        try {
+            writer.execute(() -> {
+                try {
+                    dao.insertAll(traces);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error al guardar la traza: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Las trazas son prescindibles: con la cola llena se descartan
+            Log.w(TAG, "Cola de escritura llena; se descarta una traza.");
+        }
+    }
+
+    /**
+     * Percentiles por etapa sobre los últimos limit mensajes trazados. Cada etapa mide
+     * el tiempo desde la etapa anterior registrada en el mismo intento; la fila
+     * STAGE_COUNT es el total desde que vence hasta el clic en enviar.
+     */
+    public Percentiles[] stagePercentiles(int limit) {
+        return stagePercentiles(dao.getTracesOfLatestMessages(limit));
+    }
+
+    /**
+     * Cálculo de stagePercentiles sobre las marcas ya leídas, agrupadas por mensaje y en
+     * orden de inserción dentro de cada uno (como las devuelve SendTraceDao).
+     */
+    static Percentiles[] stagePercentiles(List<SendTraceEntity> traces) {
+        Map<Integer, long[]> byMessage = new LinkedHashMap<>();
+        for (SendTraceEntity trace : traces) {
+            long[] stages = byMessage.get(trace.messageId);
+            if (stages == null || (trace.stage == STAGE_DUE && stages[STAGE_DUE] != 0)) {
+                // Primer intento o un reintento: solo cuenta el último intento
+                stages = new long[STAGE_COUNT];
+                byMessage.put(trace.messageId, stages);
+            }
+            if (stages[trace.stage] == 0) {
+                // Solo la primera marca de cada etapa (p. ej. el primer cambio de ventana)
+                stages[trace.stage] = trace.elapsedMs;
+            }
+        }
+
+        List<List<Long>> samples = new ArrayList<>(STAGE_COUNT + 1);
+        for (int i = 0; i <= STAGE_COUNT; i++) {
+            samples.add(new ArrayList<Long>());
+        }
+        for (long[] stages : byMessage.values()) {
+            long previous = 0;
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                if (stages[stage] == 0) {
+                    continue;
+                }
+                // Las diferencias negativas vienen de un reinicio entre etapas: se descartan
+                if (previous != 0 && stages[stage] >= previous) {
+                    samples.get(stage).add(stages[stage] - previous);
+                }
+                previous = stages[stage];
+            }
+            if (stages[STAGE_DUE] != 0 && stages[STAGE_SEND_CLICKED] >= stages[STAGE_DUE]) {
+                samples.get(STAGE_COUNT).add(stages[STAGE_SEND_CLICKED] - stages[STAGE_DUE]);
+            }
+        }
+
+        Percentiles[] result = new Percentiles[STAGE_COUNT + 1];
+        for (int i = 0; i <= STAGE_COUNT; i++) {
+            List<Long> values = samples.get(i);
+            long[] array = new long[values.size()];
+            for (int j = 0; j < array.length; j++) {
+                array[j] = values.get(j);
+            }
+            result[i] = Percentiles.of(array);
+        }
+        return result;
+    }
+
+    /**
+     * Trigger que recorta send_traces a las MAX_ROWS filas más recientes. Se llama al
+     * crear la base de datos y desde la migración que introduce la tabla.
+     */
+    static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `send_traces_ring_buffer` "
+                + "AFTER INSERT ON `send_traces` BEGIN "
+                + "DELETE FROM `send_traces` WHERE `id` <= NEW.`id` - " + MAX_ROWS + "; "
+                + "END");
+    }
+}
@@ -1,12 +1,164 @@
 package com.example.mensajeautomatico;
 
-import androidx.appcompat.app.AppCompatActivity;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.provider.Settings;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.TextView;
+import android.widget.Toast;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SwitchCompat;
 
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Ajustes de envío: modo exacto, ritmo del limitador (SendRateLimiter) y métricas
+ * medidas: retraso de cada modo (p50/p95/p99 de la diferencia entre la entrega real y
+ * la hora programada, que incluye la espera en la cola del limitador), ritmo real de
+ * la última hora y ocupación de los ejecutores compartidos.
+ */
 public class SettingsActivity extends AppCompatActivity {
+
+    private static final String TAG = "SettingsActivity";
+
+    // Envíos recientes que se usan para calcular los percentiles de cada modo
+    private static final int SKEW_SAMPLE_SIZE = 500;
+    private static final long THROUGHPUT_WINDOW_MS = 60 * 60 * 1000;
+
+    private SwitchCompat switchExactAlarm;
+    private TextView tvExactAlarmStatus;
+    private TextView tvSkewWorkManager;
+    private TextView tvSkewExactAlarm;
+    private TextView tvThroughput;
+    private TextView tvExecutors;
+    private EditText etRatePerMinute;
+    private EditText etRecipientSpacing;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        // Puedes agregar un layout o funcionalidad aquí en el futuro.
+        setContentView(R.layout.activity_settings);
+
+        switchExactAlarm = findViewById(R.id.switch_exact_alarm);
+        tvExactAlarmStatus = findViewById(R.id.tv_exact_alarm_status);
+        tvSkewWorkManager = findViewById(R.id.tv_skew_work_manager);
+        tvSkewExactAlarm = findViewById(R.id.tv_skew_exact_alarm);
+        tvThroughput = findViewById(R.id.tv_throughput);
+        tvExecutors = findViewById(R.id.tv_executors);
+        etRatePerMinute = findViewById(R.id.et_rate_per_minute);
+        etRecipientSpacing = findViewById(R.id.et_recipient_spacing);
+        Button btnSaveRate = findViewById(R.id.btn_save_rate);
+
+        SendRateLimiter limiter = SendRateLimiter.load(this);
+        etRatePerMinute.setText(String.valueOf(limiter.messagesPerMinute));
+        etRecipientSpacing.setText(String.valueOf(limiter.recipientSpacingMs / 1000));
+        btnSaveRate.setOnClickListener(v -> saveRate());
+        findViewById(R.id.btn_send_traces).setOnClickListener(v ->
+                startActivity(new Intent(SettingsActivity.this, SendTraceActivity.class)));
+
+        switchExactAlarm.setChecked(MessageDispatcher.isExactModeEnabled(this));
+        switchExactAlarm.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (isChecked && !MessageDispatcher.canScheduleExactAlarms(this)
+                    && Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+                // Desde Android 12 el usuario tiene que conceder el permiso de alarmas exactas
+                startActivity(new Intent(Settings.ACTION_REQUEST_SCHEDULE_EXACT_ALARM,
+                        Uri.parse("package:" + getPackageName())));
+            }
+            // Reprogramar consulta la base de datos; con la cola llena, en un hilo propio
+            AppExecutors.executeOrSpawn(AppExecutors.from(this).diskIO(), "exact-mode", () ->
+                    MessageDispatcher.setExactModeEnabled(getApplicationContext(), isChecked));
+            renderExactAlarmStatus();
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // El permiso puede haber cambiado en los ajustes del sistema
+        renderExactAlarmStatus();
+        loadSkews();
+        renderExecutors();
+    }
+
+    private void saveRate() {
+        long rate = parseOrInvalid(etRatePerMinute.getText().toString());
+        long spacingSeconds = parseOrInvalid(etRecipientSpacing.getText().toString());
+        if (rate < 1 || rate > SendRateLimiter.MAX_MESSAGES_PER_MINUTE) {
+            Toast.makeText(this, "Introduce un ritmo entre 1 y " + SendRateLimiter.MAX_MESSAGES_PER_MINUTE
+                    + " mensajes por minuto.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (spacingSeconds < 0 || spacingSeconds > SendRateLimiter.MAX_RECIPIENT_SPACING_MS / 1000) {
+            Toast.makeText(this, "Introduce una espera entre 0 y " + SendRateLimiter.MAX_RECIPIENT_SPACING_MS / 1000
+                    + " segundos.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        SendRateLimiter.saveConfig(this, (int) rate, spacingSeconds * 1000);
+        // Los mensajes retenidos esperan con el ritmo anterior: reprogramar el despachador
+        // (consulta la base de datos; con la cola llena, en un hilo propio)
+        Context appContext = getApplicationContext();
+        AppExecutors.executeOrSpawn(AppExecutors.from(this).diskIO(), "rate-rearm",
+                () -> MessageDispatcher.rearm(appContext));
+        Toast.makeText(this, "Ritmo guardado.", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Número entero de text, o -1 si está vacío, no es un número o no cabe en un long.
+     */
+    private static long parseOrInvalid(String text) {
+        try {
+            return Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void renderExactAlarmStatus() {
+        if (!switchExactAlarm.isChecked()) {
+            tvExactAlarmStatus.setText("Desactivado: los envíos se programan con WorkManager.");
+        } else if (MessageDispatcher.canScheduleExactAlarms(this)) {
+            tvExactAlarmStatus.setText("Activado: los envíos se programan con alarmas exactas.");
+        } else {
+            tvExactAlarmStatus.setText("Falta el permiso de alarmas exactas: se usa WorkManager.");
+        }
+    }
+
+    /**
+     * Tareas activas y en cola de los ejecutores compartidos y cambios de estado
+     * pendientes de escribir.
+     */
+    private void renderExecutors() {
+        tvExecutors.setText(String.format(Locale.getDefault(), "%s\nEstados pendientes: %d",
+                AppExecutors.from(this).describe(), MessageStatusWriter.getInstance(this).getQueueDepth()));
+    }
+
+    private void loadSkews() {
+        MessageDao dao = AppDatabase.getDatabase(this).messageDao();
+        try {
+            AppExecutors.from(this).diskIO().execute(() -> loadSkewsInBackground(dao));
+        } catch (RejectedExecutionException e) {
+            // Se vuelve a pedir en el siguiente onResume
+            Log.w(TAG, "Ejecutor de E/S saturado; no se cargan las métricas de despacho.");
+        }
+    }
+
+    private void loadSkewsInBackground(MessageDao dao) {
+        Percentiles workManager = Percentiles.of(
+                dao.getRecentDispatchSkews(MessageDispatcher.MODE_WORK_MANAGER, SKEW_SAMPLE_SIZE));
+        Percentiles exactAlarm = Percentiles.of(
+                dao.getRecentDispatchSkews(MessageDispatcher.MODE_EXACT_ALARM, SKEW_SAMPLE_SIZE));
+        int dispatchedLastHour = dao.countDispatchedSince(System.currentTimeMillis() - THROUGHPUT_WINDOW_MS);
+        runOnUiThread(() -> {
+            tvSkewWorkManager.setText("WorkManager: " + workManager);
+            tvSkewExactAlarm.setText("Alarma exacta: " + exactAlarm);
+            tvThroughput.setText(String.format(Locale.getDefault(),
+                    "Ritmo real (última hora): %.1f msg/min", dispatchedLastHour / 60.0));
+        });
     }
-}
\ No newline at end of file
+}
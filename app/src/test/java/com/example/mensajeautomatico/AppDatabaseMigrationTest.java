@@ -0,0 +1,180 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Prueba local (JVM, Robolectric) de las migraciones de la tabla "messages" desde la versión 1.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = android.app.Application.class)
+public class AppDatabaseMigrationTest {
+
+    private static final String TEST_DB = "migration_test.db";
+
+    private Context context;
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        if (db != null) {
+            db.close();
+        }
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void migrate1To2_keepsRowsAndMapsStatus() {
+        createVersion1Database();
+
+        db = openMigrated();
+        MessageDao dao = db.messageDao();
+
+        List<MessageEntity> all = dao.getAllMessages();
+        assertEquals(3, all.size());
+
+        MessageEntity scheduled = dao.getMessageById(1);
+        assertEquals("600111222", scheduled.phoneNumber);
+        assertEquals("Hola", scheduled.messageText);
+        assertEquals(5000L, scheduled.scheduledTime);
+        assertEquals(100L, scheduled.createdAt);
+        assertEquals(MessageStatus.SCHEDULED, scheduled.status);
+
+        assertEquals(MessageStatus.SENT, dao.getMessageById(2).status);
+        assertEquals(MessageStatus.ERROR, dao.getMessageById(3).status);
+
+        // Las filas migradas no tienen momento de entrega (ver DispatchSkewTest)
+        assertEquals(0, dao.getRecentDispatchSkews(MessageDispatcher.MODE_WORK_MANAGER, 10).length);
+
+        // El autoincremento sigue a partir del último id migrado
+        long newId = dao.insert(new MessageEntity("600", "Nuevo", 1L, MessageStatus.SCHEDULED));
+        assertEquals(4L, newId);
+    }
+
+    @Test
+    public void migrate2To3_keepsTextAndAddsTemplates() {
+        createVersion1Database();
+        db = openMigrated();
+        MessageTemplates templates = new MessageTemplates(db);
+
+        // Las filas anteriores conservan su texto y no usan plantilla
+        MessageEntity old = db.messageDao().getMessageById(1);
+        assertNull(old.templateId);
+        assertNull(old.templateVars);
+        assertEquals("Hola", templates.resolveText(old));
+
+        // La tabla nueva deduplica el texto y las filas nuevas lo resuelven con sus variables
+        int templateId = templates.intern("Hola {nombre}");
+        assertEquals(templateId, templates.intern("Hola {nombre}"));
+        long id = db.messageDao().insert(MessageEntity.fromTemplate("600", templateId,
+                "{\"nombre\":\"Ana\"}", 6000L, MessageStatus.SCHEDULED));
+        assertEquals("Hola Ana", templates.resolveText(db.messageDao().getMessageById((int) id)));
+    }
+
+    @Test
+    public void migrate3To4_archivesByScheduledTimeNotCreation() {
+        createVersion1Database();
+        db = openMigrated();
+        MessageDao dao = db.messageDao();
+        assertEquals(0L, db.messageArchiveDao().getArchivedMessageCount());
+
+        // Creado hace mucho para enviarse hace poco: no se archiva aún
+        MessageEntity late = new MessageEntity("600", "Tarde", 9000L, MessageStatus.SENT);
+        late.createdAt = 10L;
+        int lateId = (int) dao.insert(late);
+
+        List<MessageEntity> sent = dao.getArchivableMessages(MessageStatus.SENT, 8000L, 10);
+        assertEquals(1, sent.size());
+        assertEquals(2, sent.get(0).id);
+        List<MessageEntity> later = dao.getArchivableMessages(MessageStatus.SENT, 10_000L, 10);
+        assertEquals(2, later.size());
+        assertEquals(lateId, later.get(1).id);
+        assertEquals(3, dao.getArchivableMessages(MessageStatus.ERROR, 8000L, 10).get(0).id);
+
+        String plan = explain("SELECT * FROM messages WHERE status = " + MessageStatus.SENT
+                + " AND scheduledTime < 8000 ORDER BY scheduledTime LIMIT 10");
+        assertTrue(plan, plan.contains("index_messages_status_scheduledTime"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void dueMessagesQuery_usesStatusScheduledTimeIndex() {
+        createVersion1Database();
+        db = openMigrated();
+
+        List<MessageEntity> due = db.messageDao().getScheduledMessages(10_000L);
+        assertEquals(1, due.size());
+        assertEquals(1, due.get(0).id);
+
+        String plan = explain("SELECT * FROM messages WHERE status = " + MessageStatus.SCHEDULED
+                + " AND scheduledTime <= 10000 ORDER BY scheduledTime");
+        assertTrue(plan, plan.contains("index_messages_status_scheduledTime"));
+
+        String historyPlan = explain("SELECT * FROM messages ORDER BY createdAt DESC");
+        assertTrue(historyPlan, historyPlan.contains("index_messages_createdAt"));
+    }
+
+    private AppDatabase openMigrated() {
+        // Aplica toda la cadena de migraciones desde la versión 1 hasta la actual
+        return AppDatabase.builder(context, TEST_DB, DatabaseProfile.DEFAULT)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    /**
+     * Crea la base de datos con el esquema exacto que generaba Room para la versión 1.
+     */
+    private void createVersion1Database() {
+        File file = context.getDatabasePath(TEST_DB);
+        file.getParentFile().mkdirs();
+        SQLiteDatabase v1 = SQLiteDatabase.openOrCreateDatabase(file, null);
+        v1.execSQL("CREATE TABLE IF NOT EXISTS `messages` ("
+                + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + "`phoneNumber` TEXT, `messageText` TEXT, "
+                + "`scheduledTime` INTEGER NOT NULL, `status` TEXT, "
+                + "`createdAt` INTEGER NOT NULL)");
+        v1.execSQL("INSERT INTO messages (phoneNumber, messageText, scheduledTime, status, createdAt) "
+                + "VALUES ('600111222', 'Hola', 5000, 'Programado', 100)");
+        v1.execSQL("INSERT INTO messages (phoneNumber, messageText, scheduledTime, status, createdAt) "
+                + "VALUES ('600333444', 'Adiós', 4000, 'Enviado', 200)");
+        v1.execSQL("INSERT INTO messages (phoneNumber, messageText, scheduledTime, status, createdAt) "
+                + "VALUES ('600555666', 'Error', 3000, 'Error', 300)");
+        v1.setVersion(1);
+        v1.close();
+    }
+
+    private String explain(String sql) {
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = db.query("EXPLAIN QUERY PLAN " + sql, null);
+        try {
+            int detail = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan.toString();
+    }
+}
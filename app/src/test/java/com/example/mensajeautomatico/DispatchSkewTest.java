@@ -0,0 +1,91 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Retraso de entrega por modo (ver MessageDispatcher): claimForSending anota cuándo y con
+ * qué modo se entregó cada mensaje y getRecentDispatchSkews devuelve los últimos retrasos.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = android.app.Application.class)
+public class DispatchSkewTest {
+
+    private static final String TEST_DB = "dispatch_skew_test.db";
+
+    private Context context;
+    private AppDatabase db;
+    private MessageDao dao;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(TEST_DB);
+        db = AppDatabase.builder(context, TEST_DB, DatabaseProfile.DEFAULT)
+                .allowMainThreadQueries()
+                .build();
+        dao = db.messageDao();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void claim_recordsSkewUnderItsMode() {
+        int id = insertScheduled(5000L);
+
+        assertEquals(1, dao.claimForSending(Collections.singletonList(id), 5250L, MessageDispatcher.MODE_EXACT_ALARM));
+
+        long[] exact = dao.getRecentDispatchSkews(MessageDispatcher.MODE_EXACT_ALARM, 10);
+        assertEquals(1, exact.length);
+        assertEquals(250L, exact[0]);
+        assertEquals(0, dao.getRecentDispatchSkews(MessageDispatcher.MODE_WORK_MANAGER, 10).length);
+    }
+
+    @Test
+    public void recentSkews_areNewestFirstAndLimited() {
+        int first = insertScheduled(1000L);
+        int second = insertScheduled(2000L);
+        int third = insertScheduled(3000L);
+        dao.claimForSending(Collections.singletonList(first), 1100L, MessageDispatcher.MODE_WORK_MANAGER);
+        dao.claimForSending(Collections.singletonList(second), 2900L, MessageDispatcher.MODE_WORK_MANAGER);
+        dao.claimForSending(Collections.singletonList(third), 3050L, MessageDispatcher.MODE_WORK_MANAGER);
+
+        long[] skews = dao.getRecentDispatchSkews(MessageDispatcher.MODE_WORK_MANAGER, 2);
+
+        assertEquals(2, skews.length);
+        assertEquals(50L, skews[0]);
+        assertEquals(900L, skews[1]);
+    }
+
+    @Test
+    public void claimedTwice_keepsTheFirstDispatch() {
+        int id = insertScheduled(1000L);
+        dao.claimForSending(Collections.singletonList(id), 1200L, MessageDispatcher.MODE_EXACT_ALARM);
+
+        // Ya está en Enviando: una segunda ejecución del despachador no lo reserva
+        assertEquals(0, dao.claimForSending(Collections.singletonList(id), 9000L, MessageDispatcher.MODE_WORK_MANAGER));
+
+        assertEquals(200L, dao.getRecentDispatchSkews(MessageDispatcher.MODE_EXACT_ALARM, 10)[0]);
+        assertEquals(0, dao.getRecentDispatchSkews(MessageDispatcher.MODE_WORK_MANAGER, 10).length);
+    }
+
+    private int insertScheduled(long scheduledTime) {
+        return (int) dao.insert(new MessageEntity("600111222", "Hola", scheduledTime, MessageStatus.SCHEDULED));
+    }
+}
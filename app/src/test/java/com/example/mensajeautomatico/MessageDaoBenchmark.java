@@ -0,0 +1,197 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Benchmark de MessageDao en la JVM (Robolectric, SQLite nativo del host).
+ * Compara los perfiles DEFAULT y TUNED de DatabaseProfile para cada tamaño de tabla.
+ * No se ejecuta con las pruebas normales; lanzarlo con:
+ * ./gradlew :app:testDebugUnitTest --tests '*MessageDaoBenchmark' -Pbenchmark=true -Pbenchmark.sizes=10000,100000,1000000
+ * La búsqueda en 100 000 filas debe quedarse en milisegundos por página (columna busq).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = android.app.Application.class)
+public class MessageDaoBenchmark {
+
+    private static final int INSERT_CHUNK = 1000;
+    private static final int QUERY_RUNS = 20;
+    private static final int DUE_MESSAGES = 100;
+    private static final int STATUS_UPDATES = 2000;
+    // Una de cada TEMPLATE_EVERY filas usa una de TEMPLATES plantillas, como una campaña
+    private static final int TEMPLATES = 20;
+    private static final int TEMPLATE_EVERY = 4;
+    // Búsquedas: todo coincide, solo plantillas, prefijo de número (111 filas) y nada
+    private static final String[] SEARCHES = {"prueba", "campaña 7", "+34600123", "inexistente"};
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue("Benchmark desactivado (usar -Pbenchmark=true)", Boolean.getBoolean("benchmark"));
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @Test
+    public void compareProfiles() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(Locale.US, "%-8s %9s %14s %14s %14s %14s %14s %14s %14s",
+                "perfil", "filas", "insert fil/s", "due ms (p50)", "all ms (p50)", "busq ms (p50)", "busq ms (max)",
+                "upd 1x1 /s", "upd lote /s"));
+        for (int size : parseSizes(System.getProperty("benchmark.sizes", "10000,100000"))) {
+            for (DatabaseProfile profile : DatabaseProfile.values()) {
+                lines.add(run(profile, size));
+            }
+        }
+        for (String line : lines) {
+            System.out.println(line);
+        }
+    }
+
+    private String run(DatabaseProfile profile, int size) {
+        String name = "benchmark_" + profile.name().toLowerCase(Locale.US) + "_" + size + ".db";
+        context.deleteDatabase(name);
+        AppDatabase db = AppDatabase.builder(context, name, profile)
+                .allowMainThreadQueries()
+                .build();
+        try {
+            MessageDao dao = db.messageDao();
+            long base = 1_000_000L;
+
+            int[] templateIds = new int[TEMPLATES];
+            for (int t = 0; t < TEMPLATES; t++) {
+                templateIds[t] = (int) db.messageTemplateDao().insert(
+                        new MessageTemplateEntity("Campaña " + t + " de prueba", t));
+            }
+
+            // 1. Inserción por bloques. Una de cada diez filas queda programada; el resto, enviada.
+            long start = System.nanoTime();
+            List<MessageEntity> chunk = new ArrayList<>(INSERT_CHUNK);
+            for (int i = 0; i < size; i++) {
+                int status = i % 10 == 0 ? MessageStatus.SCHEDULED : MessageStatus.SENT;
+                MessageEntity message = new MessageEntity("+34600" + i, "Mensaje de prueba " + i, base + i, status);
+                message.createdAt = base + i;
+                if (i % TEMPLATE_EVERY == 0) {
+                    message.messageText = null;
+                    message.templateId = templateIds[i % TEMPLATES];
+                }
+                chunk.add(message);
+                if (chunk.size() == INSERT_CHUNK) {
+                    dao.insertAll(chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                dao.insertAll(chunk);
+            }
+            double insertRate = size / seconds(System.nanoTime() - start);
+
+            // 2. Mensajes vencidos: las primeras DUE_MESSAGES filas programadas
+            long now = base + DUE_MESSAGES * 10L - 1;
+            long[] dueTimes = new long[QUERY_RUNS];
+            for (int i = 0; i < QUERY_RUNS; i++) {
+                long t = System.nanoTime();
+                dao.getScheduledMessages(now);
+                dueTimes[i] = System.nanoTime() - t;
+            }
+
+            // 3. Historial completo
+            int allRuns = size > 100_000 ? 3 : QUERY_RUNS;
+            long[] allTimes = new long[allRuns];
+            for (int i = 0; i < allRuns; i++) {
+                long t = System.nanoTime();
+                dao.getAllMessages();
+                allTimes[i] = System.nanoTime() - t;
+            }
+
+            // 3b. Búsqueda: primera página y la siguiente por clave de cada texto de SEARCHES
+            MessageSearch search = new MessageSearch(dao);
+            long[] searchTimes = new long[QUERY_RUNS * SEARCHES.length * 2];
+            int searchRun = 0;
+            for (int i = 0; i < QUERY_RUNS; i++) {
+                for (String query : SEARCHES) {
+                    long t = System.nanoTime();
+                    List<MessageEntity> page = search.firstPage(query, MessageHistoryPager.DEFAULT_PAGE_SIZE);
+                    searchTimes[searchRun++] = System.nanoTime() - t;
+                    if (page.isEmpty()) {
+                        searchTimes[searchRun++] = 0;
+                        continue;
+                    }
+                    MessageEntity last = page.get(page.size() - 1);
+                    t = System.nanoTime();
+                    search.pageBefore(query, last.createdAt, last.id, MessageHistoryPager.DEFAULT_PAGE_SIZE);
+                    searchTimes[searchRun++] = System.nanoTime() - t;
+                }
+            }
+
+            // 4a. Cambios de estado uno a uno (cada uno en su propia transacción)
+            int updates = Math.min(STATUS_UPDATES, size);
+            start = System.nanoTime();
+            for (int id = 1; id <= updates; id++) {
+                dao.updateStatus(id, MessageStatus.ERROR);
+            }
+            double singleRate = updates / seconds(System.nanoTime() - start);
+
+            // 4b. Cambios de estado en lote, como los escribe MessageStatusWriter
+            List<Integer> ids = new ArrayList<>(updates);
+            for (int id = 1; id <= updates; id++) {
+                ids.add(id);
+            }
+            start = System.nanoTime();
+            db.runInTransaction(() -> {
+                for (int from = 0; from < ids.size(); from += 500) {
+                    dao.updateStatusBulk(ids.subList(from, Math.min(ids.size(), from + 500)), MessageStatus.SENT);
+                }
+            });
+            double bulkRate = updates / seconds(System.nanoTime() - start);
+
+            return String.format(Locale.US, "%-8s %9d %14.0f %14.2f %14.2f %14.2f %14.2f %14.0f %14.0f",
+                    profile.name(), size, insertRate, median(dueTimes) / 1e6, median(allTimes) / 1e6,
+                    median(searchTimes) / 1e6, max(searchTimes) / 1e6, singleRate, bulkRate);
+        } finally {
+            db.close();
+            context.deleteDatabase(name);
+        }
+    }
+
+    private static double seconds(long nanos) {
+        return Math.max(nanos, 1) / 1e9;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static long max(long[] values) {
+        long max = 0;
+        for (long value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    private static List<Integer> parseSizes(String value) {
+        List<Integer> sizes = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (!part.trim().isEmpty()) {
+                sizes.add(Integer.parseInt(part.trim()));
+            }
+        }
+        return sizes;
+    }
+}
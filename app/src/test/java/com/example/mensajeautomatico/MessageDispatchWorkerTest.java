@@ -0,0 +1,149 @@
+package com.example.mensajeautomatico;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Orden y selección de los vencidos del despachador con un SendRateLimiter real.
+ * La simulación vacía una campaña de 5000 mensajes ejecución a ejecución, como lo haría
+ * el despachador (consulta por carril hasta MAX_BATCH, orderDue, select y vuelta cuando
+ * el limitador lo permite), y mide cuánto espera un mensaje urgente que llega a mitad.
+ */
+public class MessageDispatchWorkerTest {
+
+    private static final int BULK_BACKLOG = 5_000;
+    // 6 mensajes por minuto: una ficha cada 10 s
+    private static final int MESSAGES_PER_MINUTE = 6;
+    private static final long SEND_INTERVAL_MS = 60_000 / MESSAGES_PER_MINUTE;
+
+    @Test
+    public void urgentMessage_leavesWithinOneSendOfArriving() {
+        long latency = drainWithUrgentArrival(MessagePriority.URGENT);
+
+        // Espera como mucho a la siguiente ficha del limitador
+        assertTrue("latencia " + latency + " ms", latency <= SEND_INTERVAL_MS);
+    }
+
+    @Test
+    public void withoutItsLane_urgentMessageWaitsForTheBacklog() {
+        // En el carril de la campaña queda detrás de la mitad restante
+        long latency = drainWithUrgentArrival(MessagePriority.BULK);
+
+        assertTrue("latencia " + latency + " ms", latency > (BULK_BACKLOG / 2 - 1) * SEND_INTERVAL_MS);
+    }
+
+    @Test
+    public void orderDue_goesLaneByLaneMergingRetriesByAttemptTime() {
+        MessageEntity normal3 = message("normal-3", MessagePriority.NORMAL, 3);
+        MessageEntity normal5 = message("normal-5", MessagePriority.NORMAL, 5);
+        MessageEntity bulk1 = message("masivo-1", MessagePriority.BULK, 1);
+        MessageEntity retry = message("reintento", MessagePriority.NORMAL, 0);
+        retry.nextAttemptAt = 4L;
+        MessageEntity urgentRetry = message("reintento-urgente", MessagePriority.URGENT, 0);
+        urgentRetry.nextAttemptAt = 9L;
+
+        List<MessageEntity> ordered = MessageDispatchWorker.orderDue(
+                Arrays.asList(Collections.<MessageEntity>emptyList(), Arrays.asList(normal3, normal5),
+                        Collections.singletonList(bulk1)),
+                Arrays.asList(retry, urgentRetry));
+
+        assertEquals(Arrays.asList(urgentRetry, normal3, retry, normal5, bulk1), ordered);
+    }
+
+    @Test
+    public void select_skipsRecentRecipientsAndStopsWithoutTokens() {
+        SendRateLimiter limiter = new SendRateLimiter(60, 60_000, 1, 0);
+        MessageEntity recent = message("600", MessagePriority.NORMAL, 0);
+        MessageEntity fresh = message("700", MessagePriority.NORMAL, 0);
+        MessageEntity next = message("800", MessagePriority.NORMAL, 0);
+        Map<String, Long> history = new HashMap<>();
+        history.put("600", 90_000L);
+
+        MessageDispatchWorker.Selection selection = MessageDispatchWorker.select(
+                Arrays.asList(recent, fresh, next), limiter, history::get, 100_000L);
+
+        assertEquals(Collections.singletonList(fresh), selection.allowed);
+        // Sin ficha para el tercero: vuelve en 1 s, antes que los 50 s del primero
+        assertEquals(1_000L, selection.throttleWait);
+    }
+
+    /**
+     * Vacía la campaña y devuelve la latencia (salida - hora programada) del urgente, que
+     * vence a mitad de una espera del limitador cuando ya ha salido la mitad de la campaña.
+     */
+    private long drainWithUrgentArrival(int urgentLane) {
+        List<List<MessageEntity>> pending = new ArrayList<>();
+        for (int lane = 0; lane < MessagePriority.LANE_COUNT; lane++) {
+            pending.add(new ArrayList<MessageEntity>());
+        }
+        for (int i = 0; i < BULK_BACKLOG; i++) {
+            pending.get(MessagePriority.BULK).add(message("6" + (100_000 + i), MessagePriority.BULK, i));
+        }
+        SendRateLimiter limiter = new SendRateLimiter(MESSAGES_PER_MINUTE, 0, 1, 0);
+        Map<String, Long> history = new HashMap<>();
+
+        MessageEntity urgent = null;
+        long urgentLatency = -1;
+        int sent = 0;
+        long now = BULK_BACKLOG;
+        while (sent < BULK_BACKLOG + 1) {
+            List<List<MessageEntity>> dueByLane = dueByLane(pending, now);
+            MessageDispatchWorker.Selection selection = MessageDispatchWorker.select(
+                    MessageDispatchWorker.orderDue(dueByLane, Collections.<MessageEntity>emptyList()),
+                    limiter, history::get, now);
+            for (MessageEntity message : selection.allowed) {
+                pending.get(message.priority).remove(message);
+                history.put(message.phoneNumber, now);
+                if (message == urgent) {
+                    urgentLatency = now - urgent.scheduledTime;
+                }
+                sent++;
+                if (sent == BULK_BACKLOG / 2) {
+                    // Vence a mitad de la espera hasta la siguiente ficha, detrás de toda la campaña
+                    urgent = message("urgente", urgentLane, now + SEND_INTERVAL_MS / 2);
+                    pending.get(urgentLane).add(urgent);
+                }
+            }
+            // El despachador vuelve cuando el limitador deja salir el siguiente
+            now += Math.max(1, selection.throttleWait);
+        }
+
+        assertEquals(BULK_BACKLOG + 1, sent);
+        assertTrue(urgentLatency >= 0);
+        return urgentLatency;
+    }
+
+    /**
+     * Lo que devolverían las consultas por carril: vencidos por fecha, hasta MAX_BATCH en total.
+     */
+    private static List<List<MessageEntity>> dueByLane(List<List<MessageEntity>> pending, long now) {
+        List<List<MessageEntity>> due = new ArrayList<>();
+        int count = 0;
+        for (List<MessageEntity> lane : pending) {
+            List<MessageEntity> laneDue = new ArrayList<>();
+            for (MessageEntity message : lane) {
+                if (count >= MessageDispatchWorker.MAX_BATCH || message.scheduledTime > now) {
+                    break;
+                }
+                laneDue.add(message);
+                count++;
+            }
+            due.add(laneDue);
+        }
+        return due;
+    }
+
+    private static MessageEntity message(String phoneNumber, int priority, long scheduledTime) {
+        MessageEntity message = new MessageEntity(phoneNumber, "Hola", scheduledTime, MessageStatus.SCHEDULED);
+        message.priority = priority;
+        return message;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Importación de CSV/TSV: filas válidas y rechazadas, campos entre comillas, números
+ * normalizados y reparto en bloques. El programador de prueba guarda cada bloque en su
+ * transacción, como MessageScheduler, pero sin avisar al despachador.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = android.app.Application.class)
+public class MessageImporterTest {
+
+    private static final String TEST_DB = "message_importer_test.db";
+    // 2099-01-01 00:00 UTC, siempre en el futuro
+    private static final long FUTURE = 4_070_908_800_000L;
+
+    private Context context;
+    private AppDatabase db;
+    private RecordingScheduler scheduler;
+    private final List<int[]> progress = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(TEST_DB);
+        db = AppDatabase.builder(context, TEST_DB, DatabaseProfile.DEFAULT)
+                .allowMainThreadQueries()
+                .build();
+        scheduler = new RecordingScheduler(context, db);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void validRows_areImportedWithNormalizedNumbers() throws IOException {
+        MessageImporter.ImportResult result = importCsv(10,
+                "telefono,mensaje,fecha",
+                "+34 600-111-222,Hola,2099-01-01 10:00",
+                "600 111 333,Hola," + FUTURE);
+
+        assertEquals(2, result.imported);
+        assertEquals(0, result.rejected);
+        List<MessageEntity> saved = scheduler.chunks.get(0);
+        assertEquals("+34600111222", saved.get(0).phoneNumber);
+        assertEquals("600111333", saved.get(1).phoneNumber);
+        assertEquals(FUTURE, saved.get(1).scheduledTime);
+        assertEquals(MessagePriority.BULK, saved.get(0).priority);
+        // El mismo texto comparte plantilla
+        assertEquals(saved.get(0).templateId, saved.get(1).templateId);
+        assertEquals("Hola", db.messageTemplateDao().getTemplateText(saved.get(0).templateId));
+    }
+
+    @Test
+    public void invalidRows_areRejectedAndSkipped() throws IOException {
+        MessageImporter.ImportResult result = importCsv(10,
+                "telefono,mensaje,fecha",
+                "600111222,Hola",
+                "600-ABC-222,Hola," + FUTURE,
+                "12345,Hola," + FUTURE,
+                "1234567890123456,Hola," + FUTURE,
+                "34+600111222,Hola," + FUTURE,
+                "600111222, ," + FUTURE,
+                "600111222,Hola,1000",
+                "600111222,Hola,2099-13-45 10:00",
+                "600111222,Hola," + FUTURE);
+
+        assertEquals(1, result.imported);
+        assertEquals(8, result.rejected);
+        assertEquals(1, db.messageDao().getAllMessages().size());
+    }
+
+    @Test
+    public void quotedFields_keepDelimitersAndEscapedQuotes() throws IOException {
+        assertEquals(Arrays.asList("600111222", "Hola, \"Ana\"", "", "x"),
+                MessageImporter.parseLine("600111222,\"Hola, \"\"Ana\"\"\",,x", ','));
+        assertEquals(Arrays.asList("600111222", "Hola,\tadiós"),
+                MessageImporter.parseLine("600111222\t\"Hola,\tadiós\"", '\t'));
+
+        importCsv(10, "\"+34 600 111 222\",\"Hola, \"\"Ana\"\"\",\"" + FUTURE + "\"");
+
+        MessageEntity saved = scheduler.chunks.get(0).get(0);
+        assertEquals("+34600111222", saved.phoneNumber);
+        assertEquals("Hola, \"Ana\"", db.messageTemplateDao().getTemplateText(saved.templateId));
+    }
+
+    @Test
+    public void chunks_closeAtExactlyChunkSizeRows() throws IOException {
+        importCsv(3, rows(7));
+
+        assertEquals(Arrays.asList(3, 3, 1), chunkSizes());
+        // Un aviso por bloque completo y uno al terminar
+        assertEquals(Arrays.asList(3, 6, 7), importedProgress());
+    }
+
+    @Test
+    public void fullLastChunk_isNotFollowedByAnEmptyOne() throws IOException {
+        importCsv(3, rows(6));
+
+        assertEquals(Arrays.asList(3, 3), chunkSizes());
+        assertEquals(Arrays.asList(3, 6, 6), importedProgress());
+        assertEquals(6, db.messageDao().getAllMessages().size());
+    }
+
+    @Test
+    public void rejectedRows_doNotCountTowardsTheChunk() throws IOException {
+        List<String> lines = new ArrayList<>(Arrays.asList(rows(4)));
+        lines.add(1, "no-es-un-numero,Hola," + FUTURE);
+        lines.add(3, "");
+
+        MessageImporter.ImportResult result = importCsv(2, lines.toArray(new String[0]));
+
+        assertEquals(Arrays.asList(2, 2), chunkSizes());
+        assertEquals(4, result.imported);
+        assertEquals(1, result.rejected);
+        assertEquals(1, progress.get(0)[1]);
+    }
+
+    private MessageImporter.ImportResult importCsv(int chunkSize, String... lines) throws IOException {
+        MessageImporter importer = new MessageImporter(context, scheduler, new MessageTemplates(db), chunkSize);
+        String csv = String.join("\n", lines) + "\n";
+        return importer.importFrom(new BufferedReader(new StringReader(csv)),
+                (imported, rejected) -> progress.add(new int[] {imported, rejected}));
+    }
+
+    private static String[] rows(int count) {
+        String[] rows = new String[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = "600111" + (100 + i) + ",Mensaje " + (i % 2) + "," + (FUTURE + i);
+        }
+        return rows;
+    }
+
+    private List<Integer> chunkSizes() {
+        List<Integer> sizes = new ArrayList<>();
+        for (List<MessageEntity> chunk : scheduler.chunks) {
+            sizes.add(chunk.size());
+        }
+        return sizes;
+    }
+
+    private List<Integer> importedProgress() {
+        List<Integer> imported = new ArrayList<>();
+        for (int[] step : progress) {
+            imported.add(step[0]);
+        }
+        return imported;
+    }
+
+    /**
+     * Guarda cada bloque como MessageScheduler.scheduleAll y lo anota, sin programar el
+     * despachador (WorkManager no está inicializado en las pruebas).
+     */
+    private static class RecordingScheduler extends MessageScheduler {
+        final List<List<MessageEntity>> chunks = new ArrayList<>();
+        private final AppDatabase db;
+
+        RecordingScheduler(Context context, AppDatabase db) {
+            super(context, db);
+            this.db = db;
+        }
+
+        @Override
+        public long[] scheduleAll(List<MessageEntity> messages, Runnable beforeInsert) {
+            long[] ids = db.runInTransaction(() -> {
+                if (beforeInsert != null) {
+                    beforeInsert.run();
+                }
+                return db.messageDao().insertAll(messages);
+            });
+            chunks.add(new ArrayList<>(messages));
+            return ids;
+        }
+    }
+}
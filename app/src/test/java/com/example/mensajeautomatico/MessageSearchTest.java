@@ -0,0 +1,151 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Búsqueda paginada por clave: las dos ramas (texto propio y plantilla) deben dar las
+ * mismas filas, en el mismo orden y sin repetir, que filtrar y ordenar todo el historial.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = android.app.Application.class)
+public class MessageSearchTest {
+
+    private static final String TEST_DB = "message_search_test.db";
+
+    private Context context;
+    private AppDatabase db;
+    private MessageDao dao;
+    private int offerTemplate;
+    private int otherTemplate;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(TEST_DB);
+        db = AppDatabase.builder(context, TEST_DB, DatabaseProfile.DEFAULT)
+                .allowMainThreadQueries()
+                .build();
+        dao = db.messageDao();
+        offerTemplate = (int) db.messageTemplateDao().insert(new MessageTemplateEntity("Oferta de verano", 1));
+        otherTemplate = (int) db.messageTemplateDao().insert(new MessageTemplateEntity("Recordatorio de cita", 2));
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void fewTemplateMessages_pagesMatchFullSort() {
+        insertMix(60);
+
+        // Páginas pequeñas para cruzar muchas claves, algunas entre filas del mismo createdAt
+        assertPagesMatch("oferta", 7);
+        assertPagesMatch("oferta 6002", 7);
+        assertPagesMatch("cita", 7);
+        assertEquals(0, collectPages("inexistente", 7).size());
+    }
+
+    @Test
+    public void manyTemplateMessages_pagesMatchFullSort() {
+        // Más de 2000 mensajes de la plantilla de oferta: la rama de plantillas recorre el
+        // índice de createdAt
+        insertMix(3 * 2000 + 300);
+
+        assertPagesMatch("oferta", MessageHistoryPager.DEFAULT_PAGE_SIZE);
+        assertPagesMatch("600", MessageHistoryPager.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Filas de count en count con varios createdAt repetidos: un tercio usa la plantilla
+     * de oferta, otro la de cita y el resto tiene texto propio (algunos con "oferta").
+     */
+    private void insertMix(int count) {
+        List<MessageEntity> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MessageEntity message = new MessageEntity("600" + i, "Hola " + i, i, MessageStatus.SENT);
+            message.createdAt = 1000 + i / 3;
+            if (i % 3 == 0) {
+                message.messageText = null;
+                message.templateId = offerTemplate;
+            } else if (i % 3 == 1) {
+                message.messageText = null;
+                message.templateId = otherTemplate;
+            } else if (i % 4 == 0) {
+                message.messageText = "Última oferta " + i;
+            }
+            messages.add(message);
+        }
+        dao.insertAll(messages);
+    }
+
+    private void assertPagesMatch(String query, int pageSize) {
+        List<Integer> expected = expectedIds(query);
+        assertFalse(query, expected.isEmpty());
+        assertEquals(query, expected, collectPages(query, pageSize));
+    }
+
+    private List<Integer> collectPages(String query, int pageSize) {
+        MessageHistoryPager pager = new MessageHistoryPager(dao, query, pageSize);
+        List<Integer> ids = new ArrayList<>();
+        while (!pager.isEndReached()) {
+            for (MessageEntity message : pager.loadNextPage()) {
+                ids.add(message.id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Lo que debe salir, de la más reciente a la más antigua: filas en cuyo número y texto
+     * propio, o en cuya plantilla, hay una palabra que empieza por cada término.
+     */
+    private List<Integer> expectedIds(String query) {
+        MessageTemplateDao templates = db.messageTemplateDao();
+        List<MessageEntity> all = dao.getAllMessages();
+        List<MessageEntity> matches = new ArrayList<>();
+        for (MessageEntity message : all) {
+            String own = message.phoneNumber + " " + message.messageText;
+            String template = message.templateId != null ? templates.getTemplateText(message.templateId) : "";
+            if (containsAllPrefixes(own, query) || containsAllPrefixes(template, query)) {
+                matches.add(message);
+            }
+        }
+        matches.sort((a, b) -> a.createdAt != b.createdAt
+                ? Long.compare(b.createdAt, a.createdAt) : Integer.compare(b.id, a.id));
+        List<Integer> ids = new ArrayList<>(matches.size());
+        for (MessageEntity message : matches) {
+            ids.add(message.id);
+        }
+        return ids;
+    }
+
+    private static boolean containsAllPrefixes(String text, String query) {
+        String[] words = text.toLowerCase().split("[^\\p{L}\\p{N}]+");
+        for (String term : query.toLowerCase().split(" ")) {
+            boolean found = false;
+            for (String word : words) {
+                found |= word.startsWith(term);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
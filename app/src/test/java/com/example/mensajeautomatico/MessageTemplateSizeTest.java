@@ -0,0 +1,99 @@
+package com.example.mensajeautomatico;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compara el tamaño de la base de datos con 10k mensajes del mismo texto guardado en
+ * cada fila frente a una plantilla compartida.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = android.app.Application.class)
+public class MessageTemplateSizeTest {
+
+    private static final int MESSAGES = 10_000;
+    private static final String INLINE_DB = "size_inline.db";
+    private static final String TEMPLATE_DB = "size_template.db";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(INLINE_DB);
+        context.deleteDatabase(TEMPLATE_DB);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(INLINE_DB);
+        context.deleteDatabase(TEMPLATE_DB);
+    }
+
+    @Test
+    public void templateStorageIsSmallerThanInlineText() {
+        String announcement = buildAnnouncement(2048);
+
+        long inlineBytes = fill(INLINE_DB, announcement, false);
+        long templateBytes = fill(TEMPLATE_DB, announcement, true);
+
+        System.out.println("Tamaño por " + MESSAGES + " mensajes: texto en cada fila = " + inlineBytes
+                + " bytes, plantilla = " + templateBytes + " bytes");
+        assertTrue(templateBytes * 10 < inlineBytes);
+    }
+
+    @Test
+    public void resolvesTemplateVariables() {
+        assertEquals("Hola Ana, te esperamos en Madrid",
+                MessageTemplates.applyVariables("Hola {nombre}, te esperamos en {ciudad}",
+                        "{\"nombre\":\"Ana\",\"ciudad\":\"Madrid\"}"));
+    }
+
+    private long fill(String name, String text, boolean useTemplate) {
+        AppDatabase db = AppDatabase.builder(context, name, DatabaseProfile.DEFAULT)
+                .allowMainThreadQueries()
+                .build();
+        try {
+            MessageTemplates templates = new MessageTemplates(db);
+            List<MessageEntity> batch = new ArrayList<>(MESSAGES);
+            for (int i = 0; i < MESSAGES; i++) {
+                String phone = "+34600" + String.format("%06d", i);
+                if (useTemplate) {
+                    batch.add(MessageEntity.fromTemplate(phone, templates.intern(text), null,
+                            1_000L + i, MessageStatus.SCHEDULED));
+                } else {
+                    batch.add(new MessageEntity(phone, text, 1_000L + i, MessageStatus.SCHEDULED));
+                }
+            }
+            db.messageDao().insertAll(batch);
+            db.query("PRAGMA wal_checkpoint(TRUNCATE)", null).close();
+        } finally {
+            db.close();
+        }
+        File file = context.getDatabasePath(name);
+        return file.length();
+    }
+
+    private static String buildAnnouncement(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        String sentence = "Recordatorio: la reunión anual se celebrará el próximo lunes. ";
+        while (sb.length() < length) {
+            sb.append(sentence);
+        }
+        return sb.substring(0, length);
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.mensajeautomatico;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Comprueba el recorrido acotado sobre un árbol simulado que cuenta los nodos obtenidos
+ * y reciclados, como AccessibilityNodes.
+ */
+public class NodeTraversalTest {
+
+    private static final class Node {
+        final String name;
+        final List<Node> children = new ArrayList<>();
+
+        Node(String name) {
+            this.name = name;
+        }
+
+        Node add(Node child) {
+            children.add(child);
+            return this;
+        }
+    }
+
+    /**
+     * Cada child() entrega una "copia" nueva, como getChild(); el test lleva la cuenta de
+     * las vivas y falla si se recicla una que no lo está.
+     */
+    private static final class CountingTree implements NodeTraversal.Tree<Node> {
+        long obtained;
+        long recycled;
+        private final Map<Node, Integer> live = new IdentityHashMap<>();
+
+        /**
+         * La raíz de la ventana, como AccessibilityNodes.root.
+         */
+        Node root(Node node) {
+            obtained++;
+            live.put(node, live.containsKey(node) ? live.get(node) + 1 : 1);
+            return node;
+        }
+
+        @Override
+        public int childCount(Node node) {
+            return node.children.size();
+        }
+
+        @Override
+        public Node child(Node node, int index) {
+            Node child = node.children.get(index);
+            obtained++;
+            live.put(child, live.containsKey(child) ? live.get(child) + 1 : 1);
+            return child;
+        }
+
+        @Override
+        public void recycle(Node node) {
+            Integer copies = live.get(node);
+            assertTrue("reciclado dos veces: " + node.name, copies != null && copies > 0);
+            live.put(node, copies - 1);
+            recycled++;
+        }
+    }
+
+    /**
+     * Rango de cada objetivo por nombre: la posición del nombre en su lista (0 es el
+     * preferido), como las estrategias de un SelectorProfile.
+     */
+    private static NodeTraversal.Ranker<Node> byName(String[]... strategies) {
+        return (target, node) -> {
+            String[] names = strategies[target];
+            for (int rank = 0; rank < names.length; rank++) {
+                if (names[rank].equals(node.name)) {
+                    return rank;
+                }
+            }
+            return -1;
+        };
+    }
+
+    @Test
+    public void find_returnsFirstMatchInPreorderWithItsPath() {
+        Node root = new Node("raiz")
+                .add(new Node("a").add(new Node("a0")).add(new Node("objetivo")))
+                .add(new Node("objetivo"));
+        CountingTree tree = new CountingTree();
+        NodeTraversal<Node> traversal = new NodeTraversal<>(tree, 10, 100);
+        int[] path = new int[10];
+
+        Node found = traversal.find(root, node -> node.name.equals("objetivo"), path);
+
+        assertSame(root.children.get(0).children.get(1), found);
+        assertEquals(2, traversal.getLastPathLength());
+        assertEquals(0, path[0]);
+        assertEquals(1, path[1]);
+        assertEquals(4, traversal.getLastVisited());
+        // Solo queda vivo el nodo devuelto
+        assertEquals(1, tree.obtained - tree.recycled);
+    }
+
+    @Test
+    public void thousandsOfSearches_doNotLeakNodes() {
+        Node root = wideTree(6, 5);
+        CountingTree tree = new CountingTree();
+        NodeTraversal<Node> traversal = new NodeTraversal<>(tree, 40, 100_000);
+
+        for (int i = 0; i < 5_000; i++) {
+            Node found = traversal.find(root, node -> node.name.equals("hoja-3"));
+            assertNotNull(found);
+            tree.recycle(found);
+            assertNull(traversal.find(root, node -> node.name.equals("no-existe")));
+        }
+
+        assertTrue(tree.obtained > 5_000);
+        assertEquals(tree.obtained, tree.recycled);
+    }
+
+    @Test
+    public void deepTree_doesNotOverflowAndRespectsDepthLimit() {
+        Node root = new Node("raiz");
+        Node current = root;
+        for (int depth = 1; depth <= 100_000; depth++) {
+            Node next = new Node("nivel-" + depth);
+            current.add(next);
+            current = next;
+        }
+        CountingTree tree = new CountingTree();
+
+        NodeTraversal<Node> unbounded = new NodeTraversal<>(tree, 100_000, 1_000_000);
+        assertNotNull(unbounded.find(root, node -> node.name.equals("nivel-100000")));
+
+        NodeTraversal<Node> bounded = new NodeTraversal<>(tree, 50, 1_000_000);
+        assertNull(bounded.find(root, node -> node.name.equals("nivel-51")));
+        assertNotNull(bounded.find(root, node -> node.name.equals("nivel-50")));
+        assertEquals(51, bounded.getLastVisited());
+    }
+
+    @Test
+    public void nodeBudget_stopsTheSearchAndRecyclesThePath() {
+        Node root = wideTree(4, 10);
+        CountingTree tree = new CountingTree();
+        NodeTraversal<Node> traversal = new NodeTraversal<>(tree, 40, 100);
+
+        assertNull(traversal.find(root, node -> false));
+
+        assertTrue(traversal.wasLastTruncated());
+        assertEquals(100, traversal.getLastVisited());
+        assertEquals(tree.obtained, tree.recycled);
+    }
+
+    @Test
+    public void findBest_recyclesKeptNodeOnceABetterOneDisplacesIt() {
+        Node secondary = new Node("campo-alternativo");
+        Node preferred = new Node("campo");
+        Node root = new Node("raiz")
+                .add(secondary)
+                .add(new Node("panel").add(preferred))
+                .add(new Node("resto"));
+        CountingTree tree = new CountingTree();
+        NodeTraversal<Node> traversal = new NodeTraversal<>(tree, 10, 100);
+        Node[] results = new Node[1];
+        int[] ranks = new int[1];
+        int[][] paths = new int[1][10];
+        int[] pathLengths = new int[1];
+
+        traversal.findBest(tree.root(root), byName(new String[]{"campo", "campo-alternativo"}),
+                results, ranks, paths, pathLengths);
+
+        assertSame(preferred, results[0]);
+        assertEquals(0, ranks[0]);
+        assertEquals(2, pathLengths[0]);
+        assertEquals(1, paths[0][0]);
+        assertEquals(0, paths[0][1]);
+        // Con el preferido encontrado no se visita "resto"
+        assertEquals(4, traversal.getLastVisited());
+        // Solo siguen vivos la raíz y el resultado: el desplazado ya se ha reciclado
+        assertEquals(2, tree.obtained - tree.recycled);
+
+        NodeTraversal.release(tree, root, Arrays.asList(results));
+        assertEquals(tree.obtained, tree.recycled);
+    }
+
+    @Test
+    public void findBest_sameNodeKeptForTwoTargetsIsRecycledOnce() {
+        Node shared = new Node("boton");
+        Node root = new Node("raiz")
+                .add(new Node("campo"))
+                .add(new Node("panel").add(shared))
+                .add(new Node("enviar"));
+        CountingTree tree = new CountingTree();
+        NodeTraversal<Node> traversal = new NodeTraversal<>(tree, 10, 100);
+        Node[] results = new Node[3];
+        int[] ranks = new int[3];
+        int[][] paths = new int[3][10];
+        int[] pathLengths = new int[3];
+
+        // El objetivo 0 empieza con "campo" y lo desplaza "boton", que también queda para
+        // el 1 (y luego lo desplaza "enviar"); el 2 acepta la raíz
+        traversal.findBest(tree.root(root), byName(
+                new String[]{"boton", "campo"},
+                new String[]{"enviar", "boton"},
+                new String[]{"raiz"}), results, ranks, paths, pathLengths);
+
+        assertSame(shared, results[0]);
+        assertEquals("enviar", results[1].name);
+        assertSame(root, results[2]);
+        assertEquals(0, ranks[2]);
+        assertEquals(0, pathLengths[2]);
+
+        NodeTraversal.release(tree, root, Arrays.asList(results));
+        assertEquals(tree.obtained, tree.recycled);
+    }
+
+    @Test
+    public void findBest_sameNodeStillHeldForTwoTargetsIsReleasedOnce() {
+        Node shared = new Node("boton");
+        Node root = new Node("raiz").add(new Node("panel").add(shared)).add(new Node("otro"));
+        CountingTree tree = new CountingTree();
+        NodeTraversal<Node> traversal = new NodeTraversal<>(tree, 10, 100);
+        Node[] results = new Node[2];
+
+        traversal.findBest(tree.root(root), byName(new String[]{"boton"}, new String[]{"no-existe", "boton"}),
+                results, new int[2], new int[2][10], new int[2]);
+
+        assertSame(shared, results[0]);
+        assertSame(shared, results[1]);
+        assertEquals(2, tree.obtained - tree.recycled);
+
+        NodeTraversal.release(tree, root, Arrays.asList(results));
+        assertEquals(tree.obtained, tree.recycled);
+    }
+
+    @Test
+    public void walk_stopWithoutKeepRecyclesTheStoppingNodeAndThePath() {
+        Node root = new Node("raiz")
+                .add(new Node("a").add(new Node("b").add(new Node("corte").add(new Node("debajo")))))
+                .add(new Node("despues"));
+        CountingTree tree = new CountingTree();
+        NodeTraversal<Node> traversal = new NodeTraversal<>(tree, 10, 100);
+        List<String> visited = new ArrayList<>();
+
+        traversal.walk(tree.root(root), (node, depth) -> {
+            visited.add(node.name);
+            return node.name.equals("corte") ? NodeTraversal.STOP : NodeTraversal.CONTINUE;
+        });
+
+        assertEquals(4, visited.size());
+        assertEquals("corte", visited.get(3));
+        // Solo queda viva la raíz, que es del llamante
+        assertEquals(1, tree.obtained - tree.recycled);
+
+        NodeTraversal.release(tree, root, Collections.<Node>emptyList());
+        assertEquals(tree.obtained, tree.recycled);
+    }
+
+    /**
+     * Árbol completo de la profundidad y anchura indicadas; las hojas se llaman "hoja-i".
+     */
+    private static Node wideTree(int depth, int width) {
+        Node root = new Node("raiz");
+        List<Node> level = new ArrayList<>();
+        level.add(root);
+        int leaves = 0;
+        for (int d = 1; d <= depth; d++) {
+            List<Node> next = new ArrayList<>();
+            for (Node parent : level) {
+                for (int i = 0; i < width; i++) {
+                    Node child = new Node(d == depth ? "hoja-" + leaves++ : "nodo");
+                    parent.add(child);
+                    next.add(child);
+                }
+            }
+            level = next;
+        }
+        return root;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.mensajeautomatico;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmark del cálculo de la siguiente ocurrencia sobre 10.000 reglas activas.
+ * Compara el cálculo incremental (una ocurrencia por regla, lo que hace
+ * MessageRecurrence tras cada envío) con expandir 90 días de ocurrencias por regla.
+ * No se ejecuta con las pruebas normales; lanzarlo con:
+ * ./gradlew :app:testDebugUnitTest --tests '*RecurrenceRuleBenchmark' -Pbenchmark=true
+ */
+public class RecurrenceRuleBenchmark {
+
+    private static final int RULES = 10_000;
+    private static final int RUNS = 15;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    private static final long EXPANSION_MS = 90 * DAY_MS;
+    private static final String[] PATTERNS = {
+            "FREQ=HOURLY",
+            "FREQ=HOURLY;INTERVAL=4;BYDAY=MO,TU,WE,TH,FR",
+            "FREQ=DAILY",
+            "FREQ=DAILY;BYHOUR=8,14,20;BYMINUTE=0",
+            "FREQ=WEEKLY",
+            "FREQ=WEEKLY;BYDAY=MO,WE,FR;BYHOUR=9;BYMINUTE=30",
+            "FREQ=WEEKLY;INTERVAL=2;BYDAY=SA",
+    };
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue("Benchmark desactivado (usar -Pbenchmark=true)", Boolean.getBoolean("benchmark"));
+    }
+
+    @Test
+    public void nextFireOverActiveRules() {
+        Random random = new Random(42);
+        String[] texts = new String[RULES];
+        RecurrenceRule[] rules = new RecurrenceRule[RULES];
+        long[] previous = new long[RULES];
+        long now = 1_780_000_000_000L;
+        for (int i = 0; i < RULES; i++) {
+            texts[i] = PATTERNS[i % PATTERNS.length];
+            rules[i] = RecurrenceRule.parse(texts[i]);
+            // Última ocurrencia en los siete días anteriores
+            previous[i] = now - (long) (random.nextDouble() * 7 * DAY_MS);
+        }
+
+        long[] parseAndNext = new long[RUNS];
+        long[] nextOnly = new long[RUNS];
+        long[] expansion = new long[RUNS];
+        long checksum = 0;
+        long expandedOccurrences = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < RULES; i++) {
+                checksum += RecurrenceRule.parse(texts[i]).nextAfter(previous[i], now);
+            }
+            parseAndNext[run] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < RULES; i++) {
+                checksum += rules[i].nextAfter(previous[i], now);
+            }
+            nextOnly[run] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            expandedOccurrences = 0;
+            for (int i = 0; i < RULES; i++) {
+                long occurrence = rules[i].nextAfter(previous[i], now);
+                while (occurrence >= 0 && occurrence < now + EXPANSION_MS) {
+                    expandedOccurrences++;
+                    occurrence = rules[i].nextAfter(occurrence, occurrence);
+                }
+            }
+            expansion[run] = System.nanoTime() - start;
+        }
+
+        System.out.println(String.format(Locale.US, "%-28s %12s %14s", "caso (" + RULES + " reglas)", "ms (p50)",
+                "ns/regla (p50)"));
+        print("parse + siguiente", parseAndNext);
+        print("siguiente (regla en caché)", nextOnly);
+        print("expandir 90 días", expansion);
+        System.out.println(String.format(Locale.US, "filas que crearía la expansión: %d (incremental: %d)",
+                expandedOccurrences, RULES));
+        System.out.println("checksum " + checksum);
+    }
+
+    private static void print(String name, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        long median = sorted[sorted.length / 2];
+        System.out.println(String.format(Locale.US, "%-28s %12.2f %14d", name, median / 1e6, median / RULES));
+    }
+}
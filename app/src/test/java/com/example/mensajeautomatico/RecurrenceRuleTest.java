@@ -0,0 +1,54 @@
+package com.example.mensajeautomatico;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class RecurrenceRuleTest {
+
+    private static final TimeZone MADRID = TimeZone.getTimeZone("Europe/Madrid");
+
+    @Test
+    public void weekly_byDayAndHour_walksOccurrencesInOrder() throws ParseException {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=MO,WE,FR;BYHOUR=9,18;BYMINUTE=0", MADRID);
+        long previous = time("2026-03-23 09:00"); // lunes
+
+        long next = rule.nextAfter(previous, previous);
+        assertEquals(time("2026-03-23 18:00"), next);
+        next = rule.nextAfter(next, next);
+        assertEquals(time("2026-03-25 09:00"), next);
+    }
+
+    @Test
+    public void daily_keepsWallClockTimeAcrossDaylightSaving() throws ParseException {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY", MADRID);
+        long previous = time("2026-03-28 09:30"); // el cambio de hora es el 29 de marzo
+
+        assertEquals(time("2026-03-29 09:30"), rule.nextAfter(previous, previous));
+    }
+
+    @Test
+    public void missedOccurrencesAreSkipped() throws ParseException {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;INTERVAL=2", MADRID);
+        long previous = time("2026-03-23 09:30");
+
+        // Tras meses sin enviar, la siguiente es la primera futura que respeta la fase de dos semanas
+        assertEquals(time("2026-07-13 09:30"), rule.nextAfter(previous, time("2026-07-01 12:00")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsUnsupportedFrequency() {
+        RecurrenceRule.parse("FREQ=MONTHLY", MADRID);
+    }
+
+    private static long time(String value) throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.US);
+        format.setTimeZone(MADRID);
+        return format.parse(value).getTime();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.mensajeautomatico;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void delayFor_doublesUpToTheCapWithinJitter() {
+        RetryPolicy policy = new RetryPolicy(30_000, 5 * 60_000, 5);
+        Random random = new Random(7);
+
+        long[] expected = {30_000, 60_000, 120_000, 240_000, 300_000, 300_000};
+        for (int attempt = 1; attempt <= expected.length; attempt++) {
+            for (int i = 0; i < 100; i++) {
+                long delay = policy.delayFor(attempt, random);
+                assertTrue("intento " + attempt + ": " + delay,
+                        delay >= expected[attempt - 1] * (1 - RetryPolicy.JITTER)
+                                && delay <= expected[attempt - 1] * (1 + RetryPolicy.JITTER));
+            }
+        }
+    }
+
+    @Test
+    public void canRetry_stopsAtMaxAttempts() {
+        RetryPolicy policy = new RetryPolicy(30_000, 60_000, 3);
+
+        assertTrue(policy.canRetry(1));
+        assertTrue(policy.canRetry(2));
+        assertFalse(policy.canRetry(3));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.mensajeautomatico;
+
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.content.Context;
+import android.content.res.XmlResourceParser;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Prueba local (JVM, Robolectric) de los perfiles de selectores: el fichero incluido, la
+ * sustitución desde files/, el orden de preferencia de las estrategias y que la
+ * configuración del servicio permita los selectores por id.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = android.app.Application.class)
+public class SelectorProfilesTest {
+
+    private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+
+    @After
+    public void tearDown() {
+        new File(context.getFilesDir(), SelectorProfiles.OVERRIDE_FILE).delete();
+    }
+
+    @Test
+    public void bundledProfiles_coverWhatsAppAndBusiness() {
+        SelectorProfiles profiles = SelectorProfiles.load(context);
+
+        for (String packageName : new String[]{"com.whatsapp", "com.whatsapp.w4b"}) {
+            SelectorProfile profile = profiles.forPackage(packageName);
+            assertNotNull(packageName, profile);
+            int entry = profile.targetIndex(SelectorProfiles.TARGET_ENTRY);
+            int send = profile.targetIndex(SelectorProfiles.TARGET_SEND);
+            assertTrue(entry >= 0);
+            assertTrue(send >= 0);
+            assertEquals(0, profile.rank(entry, packageName + ":id/entry", "android.widget.EditText", null));
+            assertEquals(0, profile.rank(send, packageName + ":id/send", "android.widget.ImageButton", null));
+        }
+        assertNull(profiles.forPackage("com.instagram.android"));
+    }
+
+    @Test
+    public void bundledIdSelectors_needReportViewIdsInServiceConfig() throws XmlPullParserException, IOException {
+        SelectorProfiles profiles = SelectorProfiles.load(context);
+        boolean usesIds = profiles.forPackage("com.whatsapp").usesKind(SelectorProfile.KIND_RESOURCE_ID)
+                || profiles.forPackage("com.whatsapp.w4b").usesKind(SelectorProfile.KIND_RESOURCE_ID);
+
+        // Sin flagReportViewIds, getViewIdResourceName devuelve null y los selectores por
+        // id no encuentran nada nunca
+        assertTrue(usesIds);
+        assertTrue((serviceFlags() & AccessibilityServiceInfo.FLAG_REPORT_VIEW_IDS) != 0);
+    }
+
+    @Test
+    public void rank_prefersEarlierStrategiesAndMatchesLocalizedDescriptions() throws JSONException {
+        SelectorProfile profile = SelectorProfiles.parse("{\"revision\": 3, \"profiles\": {\"com.whatsapp\": {"
+                + "\"send\": [{\"id\": \"com.whatsapp:id/send\"}, {\"desc\": [\"Enviar\", \"Send\"]}]}}}")
+                .forPackage("com.whatsapp");
+        int send = profile.targetIndex(SelectorProfiles.TARGET_SEND);
+
+        assertEquals(3, profile.revision);
+        assertEquals(0, profile.rank(send, "com.whatsapp:id/send", null, "Send"));
+        assertEquals(1, profile.rank(send, null, "android.widget.ImageButton", "SEND"));
+        assertEquals(-1, profile.rank(send, "com.whatsapp:id/entry", "android.widget.EditText", "Mensaje"));
+        assertEquals(-1, profile.targetIndex(SelectorProfiles.TARGET_ENTRY));
+    }
+
+    @Test
+    public void validOverride_replacesBundledProfiles() throws IOException {
+        writeOverride("{\"revision\": 7, \"profiles\": {\"com.whatsapp\": {"
+                + "\"entry\": [{\"id\": \"com.whatsapp:id/nuevo_entry\"}]}}}");
+
+        SelectorProfile profile = SelectorProfiles.load(context).forPackage("com.whatsapp");
+
+        assertEquals(7, profile.revision);
+        assertEquals(0, profile.rank(profile.targetIndex(SelectorProfiles.TARGET_ENTRY),
+                "com.whatsapp:id/nuevo_entry", null, null));
+    }
+
+    @Test
+    public void invalidOverride_fallsBackToBundledProfiles() throws IOException {
+        writeOverride("{\"profiles\": {\"com.whatsapp\": {\"entry\": [{\"xpath\": \"//EditText\"}]}}}");
+
+        SelectorProfiles profiles = SelectorProfiles.load(context);
+
+        assertNotNull(profiles.forPackage("com.whatsapp.w4b"));
+    }
+
+    private int serviceFlags() throws XmlPullParserException, IOException {
+        try (XmlResourceParser parser = context.getResources().getXml(R.xml.accessibility_service_config)) {
+            while (parser.next() != XmlPullParser.END_DOCUMENT) {
+                if (parser.getEventType() == XmlPullParser.START_TAG
+                        && "accessibility-service".equals(parser.getName())) {
+                    return parser.getAttributeIntValue(ANDROID_NS, "accessibilityFlags", 0);
+                }
+            }
+        }
+        fail("accessibility_service_config sin accessibility-service");
+        return 0;
+    }
+
+    private void writeOverride(String json) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(new File(context.getFilesDir(), SelectorProfiles.OVERRIDE_FILE))) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.mensajeautomatico;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SendRateLimiterTest {
+
+    @Test
+    public void acquire_spacesMessagesAtConfiguredRate() {
+        // 6 mensajes por minuto: una ficha cada 10 s
+        SendRateLimiter limiter = new SendRateLimiter(6, 0, 0, 0);
+
+        assertEquals(0, limiter.acquire(1_000));
+        assertEquals(10_000, limiter.acquire(1_000));
+        assertEquals(5_000, limiter.acquire(6_000));
+        assertEquals(0, limiter.acquire(11_000));
+    }
+
+    @Test
+    public void acquire_keepsPersistedStateAcrossInstances() {
+        // Estado guardado justo después de un envío: el cubo sigue vacío tras reiniciar
+        SendRateLimiter restored = new SendRateLimiter(6, 0, 0, 50_000);
+        assertEquals(5_000, restored.acquire(55_000));
+    }
+
+    @Test
+    public void recipientDelay_enforcesMinimumSpacing() {
+        SendRateLimiter limiter = new SendRateLimiter(60, 60_000, 1, 0);
+
+        assertEquals(0, limiter.recipientDelay(null, 100_000));
+        assertEquals(30_000, limiter.recipientDelay(70_000L, 100_000));
+        assertEquals(0, limiter.recipientDelay(40_000L, 100_000));
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.mensajeautomatico;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static org.junit.Assert.*;
+
+/**
+ * Alimenta la cola de envíos con 100 mensajes a la vez contra un WhatsApp simulado en un
+ * reloj virtual y mide el ritmo sostenido. El WhatsApp simulado avisa con eventos de
+ * cambio de contenido cuando el campo de texto aparece y cuando el mensaje sale.
+ */
+public class SendStateMachineTest {
+
+    private static final int MESSAGES = 100;
+    // WhatsApp simulado: la ventana cambia tras abrir el chat, el campo de texto aparece
+    // algo después y el mensaje sale poco después de pulsar enviar
+    private static final long WINDOW_LATENCY_MS = 700;
+    private static final long ENTRY_LATENCY_MS = 1500;
+    private static final long SEND_LATENCY_MS = 300;
+
+    @Test
+    public void hundredMessagesAtOnce_areSentInOrderWithoutLoss() {
+        FakeWhatsApp whatsApp = new FakeWhatsApp();
+        SendStateMachine machine = new SendStateMachine(whatsApp);
+        whatsApp.machine = machine;
+
+        for (int id = 1; id <= MESSAGES; id++) {
+            machine.enqueue(id);
+        }
+        whatsApp.runUntilIdle();
+
+        assertEquals(MESSAGES, whatsApp.sent.size());
+        for (int i = 0; i < MESSAGES; i++) {
+            assertEquals(i + 1, (int) whatsApp.sent.get(i));
+        }
+        assertTrue(whatsApp.failed.isEmpty());
+        assertEquals(SendStateMachine.IDLE, machine.getState());
+        assertEquals(1, whatsApp.idleCount);
+
+        double perMinute = MESSAGES * 60_000.0 / whatsApp.now;
+        System.out.printf("Cola de envíos: %d mensajes en %.1f s = %.1f msg/min%n",
+                MESSAGES, whatsApp.now / 1000.0, perMinute);
+        // Sin esperas fijas, cada envío cuesta solo lo que tarda WhatsApp en cada etapa
+        long perMessage = WINDOW_LATENCY_MS + ENTRY_LATENCY_MS + SEND_LATENCY_MS;
+        assertEquals(MESSAGES * perMessage, whatsApp.now);
+    }
+
+    @Test
+    public void messageArrivingMidSend_waitsInsteadOfOverwriting() {
+        FakeWhatsApp whatsApp = new FakeWhatsApp();
+        SendStateMachine machine = new SendStateMachine(whatsApp);
+        whatsApp.machine = machine;
+
+        machine.enqueue(1);
+        whatsApp.runUntil(WINDOW_LATENCY_MS + 100);
+        assertEquals(SendStateMachine.COMPOSING, machine.getState());
+        machine.enqueue(2);
+        // Repetido: ya está en cola
+        machine.enqueue(2);
+        assertEquals(1, machine.getCurrentId());
+        whatsApp.runUntilIdle();
+
+        assertEquals(2, whatsApp.sent.size());
+        assertEquals(1, (int) whatsApp.sent.get(0));
+        assertEquals(2, (int) whatsApp.sent.get(1));
+        assertEquals(whatsApp.sent, whatsApp.composed);
+    }
+
+    @Test
+    public void missedContentEvents_areCoveredByPolling() {
+        FakeWhatsApp whatsApp = new FakeWhatsApp();
+        whatsApp.emitContentEvents = false;
+        SendStateMachine machine = new SendStateMachine(whatsApp);
+        whatsApp.machine = machine;
+
+        machine.enqueue(1);
+        whatsApp.runUntilIdle();
+
+        assertEquals(1, whatsApp.sent.size());
+        long fastest = WINDOW_LATENCY_MS + ENTRY_LATENCY_MS + SEND_LATENCY_MS;
+        assertTrue(whatsApp.now <= fastest + 2 * SendStateMachine.POLL_MS);
+    }
+
+    @Test
+    public void stageTimeouts_adaptToObservedReadinessTimes() {
+        FakeWhatsApp whatsApp = new FakeWhatsApp();
+        SendStateMachine machine = new SendStateMachine(whatsApp);
+        whatsApp.machine = machine;
+        long initialOpening = machine.getTimeoutMs(SendStateMachine.OPENING);
+
+        for (int id = 1; id <= 20; id++) {
+            machine.enqueue(id);
+        }
+        whatsApp.runUntilIdle();
+
+        // La apertura tarda siempre WINDOW_LATENCY_MS: p95 más el margen mínimo, con su suelo
+        long opening = machine.getTimeoutMs(SendStateMachine.OPENING);
+        assertTrue(opening < initialOpening);
+        assertEquals(Math.max(3_000, WINDOW_LATENCY_MS + AdaptiveTimeout.MIN_MARGIN_MS), opening);
+    }
+
+    @Test
+    public void stageTimeouts_growBackAfterTimingOutWhenWhatsAppSlowsDown() {
+        FakeWhatsApp whatsApp = new FakeWhatsApp();
+        SendStateMachine machine = new SendStateMachine(whatsApp);
+        whatsApp.machine = machine;
+        for (int id = 1; id <= 20; id++) {
+            machine.enqueue(id);
+        }
+        whatsApp.runUntilIdle();
+        long fast = machine.getTimeoutMs(SendStateMachine.OPENING);
+
+        // Arranque en frío: la ventana tarda más que el tiempo máximo aprendido
+        whatsApp.windowLatencyMs = fast + 1_000;
+        for (int id = 21; id <= 40; id++) {
+            machine.enqueue(id);
+        }
+        whatsApp.runUntilIdle();
+
+        // Los primeros agotan el tiempo, pero cuentan como muestras y el tiempo máximo
+        // crece hasta que la apertura vuelve a caber
+        assertFalse(whatsApp.failed.isEmpty());
+        assertTrue(whatsApp.failed.size() < 20);
+        assertTrue(machine.getTimeoutMs(SendStateMachine.OPENING) > whatsApp.windowLatencyMs);
+        assertEquals(40, whatsApp.sent.size() + whatsApp.failed.size());
+        assertEquals(40, (int) whatsApp.sent.get(whatsApp.sent.size() - 1));
+    }
+
+    @Test
+    public void windowThatNeverOpens_failsWithReasonAndContinues() {
+        FakeWhatsApp whatsApp = new FakeWhatsApp();
+        whatsApp.brokenId = 1;
+        SendStateMachine machine = new SendStateMachine(whatsApp);
+        whatsApp.machine = machine;
+
+        machine.enqueue(1);
+        machine.enqueue(2);
+        whatsApp.runUntilIdle();
+
+        assertEquals(1, whatsApp.failed.size());
+        assertEquals(1, (int) whatsApp.failed.get(0));
+        assertNotNull(whatsApp.lastError);
+        assertEquals(1, whatsApp.sent.size());
+        assertEquals(2, (int) whatsApp.sent.get(0));
+        assertTrue(whatsApp.now >= 10_000);
+    }
+
+    @Test
+    public void confirmTimeoutAfterClick_isPermanentSoItIsNeverResent() {
+        FakeWhatsApp whatsApp = new FakeWhatsApp();
+        whatsApp.unconfirmedId = 1;
+        whatsApp.lastError = "sin fallos";
+        SendStateMachine machine = new SendStateMachine(whatsApp);
+        whatsApp.machine = machine;
+
+        machine.enqueue(1);
+        machine.enqueue(2);
+        whatsApp.runUntilIdle();
+
+        // El clic salió: el fallo llega sin motivo (Error definitivo, sin RetryPolicy)
+        assertTrue(whatsApp.clicked.contains(1));
+        assertEquals(1, whatsApp.failed.size());
+        assertEquals(1, (int) whatsApp.failed.get(0));
+        assertNull(whatsApp.lastError);
+        assertEquals(1, whatsApp.sent.size());
+        assertEquals(2, (int) whatsApp.sent.get(0));
+    }
+
+    /**
+     * Driver con reloj virtual: las tareas se ejecutan en orden de vencimiento.
+     */
+    private static final class FakeWhatsApp implements SendStateMachine.Driver {
+
+        private static final class Task implements Comparable<Task> {
+            final long at;
+            final long sequence;
+            final Runnable runnable;
+
+            Task(long at, long sequence, Runnable runnable) {
+                this.at = at;
+                this.sequence = sequence;
+                this.runnable = runnable;
+            }
+
+            @Override
+            public int compareTo(Task other) {
+                return at != other.at ? Long.compare(at, other.at) : Long.compare(sequence, other.sequence);
+            }
+        }
+
+        SendStateMachine machine;
+        long now;
+        int brokenId = -1;
+        long windowLatencyMs = WINDOW_LATENCY_MS;
+        // Mensaje cuyo envío nunca se confirma tras pulsar enviar
+        int unconfirmedId = -1;
+        boolean emitContentEvents = true;
+        final List<Integer> sent = new ArrayList<>();
+        final List<Integer> composed = new ArrayList<>();
+        final List<Integer> clicked = new ArrayList<>();
+        final List<Integer> failed = new ArrayList<>();
+        String lastError;
+        int idleCount;
+
+        private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+        private long sequence;
+        private long entryReadyAt;
+        private long sentAt;
+
+        @Override
+        public void open(int messageId) {
+            if (messageId == brokenId) {
+                return;
+            }
+            postDelayed(() -> {
+                // El chat de un envío que ya agotó su tiempo no cuenta como apertura del siguiente
+                if (machine.getCurrentId() != messageId) {
+                    return;
+                }
+                entryReadyAt = now + ENTRY_LATENCY_MS;
+                machine.onWindowChanged();
+                contentChangedAt(entryReadyAt);
+            }, windowLatencyMs);
+        }
+
+        @Override
+        public boolean compose(int messageId) {
+            if (now < entryReadyAt) {
+                return false;
+            }
+            composed.add(messageId);
+            return true;
+        }
+
+        @Override
+        public boolean clickSend(int messageId) {
+            clicked.add(messageId);
+            sentAt = messageId == unconfirmedId ? Long.MAX_VALUE : now + SEND_LATENCY_MS;
+            if (messageId != unconfirmedId) {
+                contentChangedAt(sentAt);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean confirmSent(int messageId) {
+            return now >= sentAt;
+        }
+
+        @Override
+        public void finish(int messageId, boolean success, String error) {
+            if (success) {
+                sent.add(messageId);
+            } else {
+                failed.add(messageId);
+                lastError = error;
+            }
+        }
+
+        @Override
+        public void onIdle() {
+            idleCount++;
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delayMs) {
+            tasks.add(new Task(now + delayMs, sequence++, task));
+        }
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        private void contentChangedAt(long time) {
+            if (emitContentEvents) {
+                postDelayed(machine::onContentChanged, time - now);
+            }
+        }
+
+        void runUntil(long time) {
+            while (!tasks.isEmpty() && tasks.peek().at <= time) {
+                Task task = tasks.poll();
+                now = task.at;
+                task.runnable.run();
+            }
+            now = Math.max(now, time);
+        }
+
+        void runUntilIdle() {
+            // Los temporizadores de envíos ya terminados se ignoran: no cuentan en el reloj
+            while (!tasks.isEmpty() && machine.getState() != SendStateMachine.IDLE) {
+                Task task = tasks.poll();
+                now = task.at;
+                task.runnable.run();
+            }
+        }
+    }
+}
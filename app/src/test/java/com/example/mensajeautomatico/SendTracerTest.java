@@ -0,0 +1,102 @@
+package com.example.mensajeautomatico;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Percentiles por etapa de SendTracer sobre marcas escritas a mano, en el orden en que
+ * las devuelve SendTraceDao.getTracesOfLatestMessages (por mensaje y por id).
+ */
+public class SendTracerTest {
+
+    private final List<SendTraceEntity> traces = new ArrayList<>();
+
+    @Test
+    public void eachStageMeasuresFromThePreviousRecordedOne() {
+        // Sin marca de Servicio: Ventana se mide desde Broadcast
+        mark(1, SendTracer.STAGE_DUE, 1_000);
+        mark(1, SendTracer.STAGE_DISPATCH_START, 1_100);
+        mark(1, SendTracer.STAGE_BROADCAST_SENT, 1_150);
+        mark(1, SendTracer.STAGE_WINDOW_CHANGED, 1_950);
+        mark(1, SendTracer.STAGE_ENTRY_FOUND, 2_000);
+        mark(1, SendTracer.STAGE_TEXT_SET, 2_010);
+        mark(1, SendTracer.STAGE_SEND_CLICKED, 2_500);
+
+        Percentiles[] stages = SendTracer.stagePercentiles(traces);
+
+        assertEquals(0, stages[SendTracer.STAGE_DUE].count);
+        assertEquals(100, stages[SendTracer.STAGE_DISPATCH_START].p50);
+        assertEquals(0, stages[SendTracer.STAGE_SERVICE_RECEIVED].count);
+        assertEquals(800, stages[SendTracer.STAGE_WINDOW_CHANGED].p50);
+        assertEquals(490, stages[SendTracer.STAGE_SEND_CLICKED].p50);
+        assertEquals(1_500, stages[SendTracer.STAGE_COUNT].p50);
+    }
+
+    @Test
+    public void onlyTheFirstMarkOfEachStageCounts() {
+        // El servicio anota cada cambio de ventana; vale el primero
+        mark(1, SendTracer.STAGE_DUE, 1_000);
+        mark(1, SendTracer.STAGE_SERVICE_RECEIVED, 1_200);
+        mark(1, SendTracer.STAGE_WINDOW_CHANGED, 1_500);
+        mark(1, SendTracer.STAGE_WINDOW_CHANGED, 1_900);
+        mark(1, SendTracer.STAGE_WINDOW_CHANGED, 2_400);
+        mark(1, SendTracer.STAGE_ENTRY_FOUND, 2_600);
+
+        Percentiles[] stages = SendTracer.stagePercentiles(traces);
+
+        assertEquals(1, stages[SendTracer.STAGE_WINDOW_CHANGED].count);
+        assertEquals(300, stages[SendTracer.STAGE_WINDOW_CHANGED].p50);
+        assertEquals(1_100, stages[SendTracer.STAGE_ENTRY_FOUND].p50);
+    }
+
+    @Test
+    public void retry_discardsTheEarlierAttempt() {
+        mark(1, SendTracer.STAGE_DUE, 1_000);
+        mark(1, SendTracer.STAGE_DISPATCH_START, 1_400);
+        mark(1, SendTracer.STAGE_BROADCAST_SENT, 1_450);
+        // El reintento vuelve a vencer: solo cuenta este intento
+        mark(1, SendTracer.STAGE_DUE, 60_000);
+        mark(1, SendTracer.STAGE_DISPATCH_START, 60_020);
+        mark(1, SendTracer.STAGE_SEND_CLICKED, 63_000);
+
+        Percentiles[] stages = SendTracer.stagePercentiles(traces);
+
+        assertEquals(1, stages[SendTracer.STAGE_DISPATCH_START].count);
+        assertEquals(20, stages[SendTracer.STAGE_DISPATCH_START].p50);
+        assertEquals(0, stages[SendTracer.STAGE_BROADCAST_SENT].count);
+        assertEquals(2_980, stages[SendTracer.STAGE_SEND_CLICKED].p50);
+        assertEquals(3_000, stages[SendTracer.STAGE_COUNT].p50);
+    }
+
+    @Test
+    public void rebootBetweenStages_dropsNegativeDifferences() {
+        // Vence antes de un reinicio; el reloj monótono vuelve a empezar antes de despachar
+        mark(1, SendTracer.STAGE_DUE, 900_000);
+        mark(1, SendTracer.STAGE_DISPATCH_START, 5_000);
+        mark(1, SendTracer.STAGE_BROADCAST_SENT, 5_030);
+        mark(1, SendTracer.STAGE_SEND_CLICKED, 7_000);
+        // Un segundo mensaje sin reinicio
+        mark(2, SendTracer.STAGE_DUE, 10_000);
+        mark(2, SendTracer.STAGE_DISPATCH_START, 10_200);
+        mark(2, SendTracer.STAGE_SEND_CLICKED, 12_000);
+
+        Percentiles[] stages = SendTracer.stagePercentiles(traces);
+
+        // La etapa que cruza el reinicio se descarta; las siguientes se miden desde ella
+        assertEquals(1, stages[SendTracer.STAGE_DISPATCH_START].count);
+        assertEquals(200, stages[SendTracer.STAGE_DISPATCH_START].p50);
+        assertEquals(30, stages[SendTracer.STAGE_BROADCAST_SENT].p50);
+        assertEquals(2, stages[SendTracer.STAGE_SEND_CLICKED].count);
+        // El total del primero también cruza el reinicio
+        assertEquals(1, stages[SendTracer.STAGE_COUNT].count);
+        assertEquals(2_000, stages[SendTracer.STAGE_COUNT].p50);
+    }
+
+    private void mark(int messageId, int stage, long elapsedMs) {
+        traces.add(new SendTraceEntity(messageId, stage, elapsedMs));
+    }
+}